@@ -8,11 +8,16 @@ package cpu;
  * @version 1.0
  */
 
+import java.util.Arrays;
+
+import simulator.AddressLayout;
 import simulator.CPUBase;
 import simulator.Debug;
 import simulator.ICPU;
 import simulator.IOS;
+import simulator.InvertedPageTable;
 import simulator.IPageTableEntry;
+import simulator.PackedPTE;
 import simulator.ITLBEntry;
 import simulator.Simulator;
 import simulator.SystemInfo;
@@ -22,14 +27,73 @@ public class CPU extends CPUBase {
 	private ICPU m_cpu;
 
 	public class TLB  {
-		// This is the class that constructs/contains all
-		// of the TLBEntry objects
-		// Here's the constructor I would use. But feel free to change it.
-		TLBEntry[] TLBEntryArray;
-		TLB(final int tlb_entry_count) {
+		// The TLB is split into sets of m_ways slots.  A page can only
+		// be held in the set selected by hashing its page number, so a
+		// lookup only scans m_ways slots rather than the whole TLB.
+		// Slot state lives in parallel primitive arrays; the TLBEntry
+		// objects are just views over a slot, handed out to the OS.
+		// Each slot is tagged with the ASID of the address space that
+		// loaded it (always 0 unless the OS hands out ASIDs).
+		// A large-page slot maps a whole L1 slot's worth of pages: it
+		// holds the first page and frame of the run, and lives in the set
+		// selected by the L1 index rather than the page number.
+		final int[] m_asids;
+		final long[] m_pages;
+		final int[] m_frames;
+		final int[] m_times;
+		final boolean[] m_valid;
+		final boolean[] m_large;
+		int m_large_count = 0;		// valid large-page slots; none means no large probe
+		final int m_ways;
+		final int m_way_bits;
+		final int m_set_bits;
+		final int m_set_mask;
+		final TLBEntry[] TLBEntryArray;
+		final TLBReplacementPolicy m_policy;
+		// Only a TLB backed directly by the page walk reports its loads
+		// via logTLBLoadClean/logTLBLoadSteal
+		final boolean m_log_loads;
+		// Which CPUBase hit/miss counters this TLB feeds (TLB_L1 etc.)
+		final int m_stat;
+
+		// Per set, the invalid slots are kept on a stack so refills never
+		// have to scan the set; once it's full m_policy picks the victim.
+		final int[] m_free;		// set s's stack is m_free[s*m_ways ...]
+		final int[] m_free_count;
+
+		TLB(final int tlb_entry_count, final int ways, final String policy, final boolean log_loads, final int stat) {
+			final int sets = tlb_entry_count / ways;
+			m_policy = newPolicy(policy, tlb_entry_count, sets, ways);
+			m_log_loads = log_loads;
+			m_stat = stat;
+			m_asids = new int[tlb_entry_count];
+			m_pages = new long[tlb_entry_count];
+			m_frames = new int[tlb_entry_count];
+			m_times = new int[tlb_entry_count];
+			m_valid = new boolean[tlb_entry_count];
+			m_large = new boolean[tlb_entry_count];
+			m_ways = ways;
+			m_way_bits = Integer.numberOfTrailingZeros(ways);
+			m_set_bits = Integer.numberOfTrailingZeros(sets);
+			m_set_mask = sets - 1;
+			m_free = new int[tlb_entry_count];
+			m_free_count = new int[sets];
 			TLBEntryArray = new TLBEntry[tlb_entry_count];
 			for (int i = 0; i < tlb_entry_count; ++i)
-				TLBEntryArray[i] = new TLBEntry();
+				TLBEntryArray[i] = new TLBEntry(i);
+			invalidate();
+		}
+
+		private TLBReplacementPolicy newPolicy(String policy, int entry_count, int sets, int ways) {
+			if (policy.equalsIgnoreCase("FIFO"))
+				return new ListTLBPolicy(entry_count, sets, false);
+			if (policy.equalsIgnoreCase("RANDOM"))
+				return new RandomTLBPolicy(ways, m_sysinfo.getTLBPolicySeed());
+			if (policy.equalsIgnoreCase("CLOCK"))
+				return new ClockTLBPolicy(entry_count, sets, ways);
+			if (policy.equalsIgnoreCase("LFU"))
+				return new LFUTLBPolicy(entry_count, ways);
+			return new ListTLBPolicy(entry_count, sets, true);
 		}
 
 		/**
@@ -38,104 +102,318 @@ public class CPU extends CPUBase {
 		TLBEntry[] getTLBEntries() {
 			return TLBEntryArray;
 		}
+
+		/**
+		 * Folds the high bits of the page number into the set index so
+		 * that strided pages don't all land in the same set.  The ASID
+		 * is mixed in so that address spaces don't all crowd the same
+		 * sets for their low pages.
+		 * @param asid
+		 * @param page
+		 * @return index of page's set
+		 */
+		int setOf(int asid, long page) {
+			int key = (int) (page ^ (page >>> 32)) ^ asid;
+			return (key ^ (key >>> m_set_bits)) & m_set_mask;
+		}
 		
 		/**
-		 * Searches through the TLB to see if our desired page is stored there.
-		 * Returns the corrosponding frame number if it is, and -1 if not.
+		 * Searches page's set to see if our desired page is stored there,
+		 * then (if there are any) the set a large page holding it would use.
+		 * @param asid
 		 * @param search_page
-		 * @return
+		 * @return the slot holding the mapping, or -1 if not found
 		 */
-		TLBEntry searchTLB(int search_page) {
-			for(TLBEntry e : TLBEntryArray) {
-				if (e.valid && e.page_number == search_page)
-					return e;
+		int searchTLB(int asid, long search_page) {
+			int base = setOf(asid, search_page) << m_way_bits;
+			for (int slot = base; slot < base + m_ways; ++slot) {
+				if (m_valid[slot] && m_pages[slot] == search_page && m_asids[slot] == asid && !m_large[slot])
+					return slot;
 			}
-			return null;
+			if (m_large_count == 0)
+				return -1;
+			return searchLarge(asid, search_page);
+		}
+
+		/**
+		 * @return the slot holding a large page that includes page, or -1
+		 */
+		private int searchLarge(int asid, long page) {
+			long first_page = page - m_layout.leafIndex(page);
+			int base = setOf(asid, m_layout.leafKey(page)) << m_way_bits;
+			for (int slot = base; slot < base + m_ways; ++slot) {
+				if (m_valid[slot] && m_large[slot] && m_pages[slot] == first_page && m_asids[slot] == asid)
+					return slot;
+			}
+			return -1;
 		}
 		
 		/**
 		 * Invalidates all the entries in our array
 		 */
 		void invalidate() {
-			for(TLBEntry e : TLBEntryArray) {
-				e.valid = false;
+			m_policy.reset();
+			m_large_count = 0;
+			for (int set = 0; set < m_free_count.length; ++set) {
+				int base = set << m_way_bits;
+				m_free_count[set] = m_ways;
+				// Pushed high to low so that slots are handed out in order
+				for (int i = 0; i < m_ways; ++i) {
+					m_free[base + i] = base + m_ways - 1 - i;
+					m_valid[base + i] = false;
+				}
 			}
 		}
-		
-		void updateTLBEntryReferencedTime(int search_page, int time) {
-			for (TLBEntry e : TLBEntryArray) {
-				if (e.page_number == search_page) {
-					e.referenced_time = time;
-					break;
-				}
+
+		/**
+		 * Invalidates just the entries loaded under asid.
+		 * @param asid
+		 */
+		void invalidateASID(int asid) {
+			for (int slot = 0; slot < m_valid.length; ++slot) {
+				if (m_valid[slot] && m_asids[slot] == asid)
+					invalidateSlot(slot);
 			}
 		}
 
-		public void updateTLB(int page_num, int frame_num) {
-			boolean found_one = false;
-			for (TLBEntry e : TLBEntryArray) {
-				if (!e.valid) {
-					e.frame_number = frame_num;
-					e.page_number = page_num;
-					e.valid = true;
-					e.referenced_time = Simulator.getMonotonicInt();
-					found_one = true;
-					logTLBLoadClean(page_num, frame_num);
-					return;
+		/**
+		 * Invalidates asid's entries for pages [start_page, start_page+page_count).
+		 * Small ranges are probed page by page; large ones with a single sweep.
+		 * A large page overlapping the range is invalidated as a whole.
+		 * @return the number of entries invalidated
+		 */
+		int invalidatePages(int asid, long start_page, int page_count) {
+			int invalidated = 0;
+			if (page_count <= m_free_count.length) {
+				for (long page = start_page; page < start_page + page_count; ++page) {
+					int slot = searchTLB(asid, page);
+					if (slot >= 0) {
+						invalidateSlot(slot);
+						++ invalidated;
+					}
+					// The page may have a large entry as well as its own
+					if (m_large_count > 0 && (slot = searchLarge(asid, page)) >= 0) {
+						invalidateSlot(slot);
+						++ invalidated;
+					}
 				}
-			}
-			// All were valid, so we grab the least recently used instead
-			if (!found_one) {
-				TLBEntry e = TLBEntryArray[0];
-				int current_time = e.getReferencedTime();
-				for (int i = 1; i < TLBEntryArray.length; ++i) {
-					if (TLBEntryArray[i].referenced_time < current_time) {
-						e = TLBEntryArray[i];
-						current_time = e.referenced_time;
+			} else {
+				for (int slot = 0; slot < m_valid.length; ++slot) {
+					if (!m_valid[slot] || m_asids[slot] != asid)
+						continue;
+					long last_page = m_large[slot] ? m_pages[slot] + m_layout.getLeafEntryCount() - 1 : m_pages[slot];
+					if (last_page >= start_page && m_pages[slot] - start_page < page_count) {
+						invalidateSlot(slot);
+						++ invalidated;
 					}
 				}
-				logTLBLoadSteal(page_num, frame_num, e.page_number, e.frame_number);
-				e.frame_number = frame_num;
-				e.page_number = page_num;
-				e.valid = true;
-				e.referenced_time = Simulator.getMonotonicInt();
 			}
+			return invalidated;
 		}
-	}
 
-	/*
-	 * This your TLBEntry class that you need to implement
-	 */
-	static class TLBEntry implements ITLBEntry {
-		int page_number;
-		int frame_number;
-		int referenced_time;
-		boolean valid = false;
+		private void invalidateSlot(int slot) {
+			int set = slot >> m_way_bits;
+			m_policy.invalidated(set, slot);
+			m_valid[slot] = false;
+			if (m_large[slot])
+				-- m_large_count;
+			m_free[(set << m_way_bits) + m_free_count[set]++] = slot;
+		}
 
-		@Override
-		public int getFrame() {
-			return frame_number;
+		/**
+		 * @return the frame holding page, which slot maps
+		 */
+		int getFrame(int slot, long page) {
+			if (m_large[slot])
+				return m_frames[slot] + m_layout.leafIndex(page);
+			return m_frames[slot];
 		}
 
-		@Override
-		public int getReferencedTime() {
-			return referenced_time;
+		boolean isLarge(int slot) {
+			return m_large[slot];
 		}
 
-		@Override
-		public boolean isValid() {
-			return valid;
+		/**
+		 * Records a hit on slot.  The referenced time is for the OS's
+		 * frame LRU, so it's only a real time if that needs one (see
+		 * accessTime()); no TLB policy uses it.
+		 * @param slot
+		 */
+		void touch(int slot) {
+			m_times[slot] = accessTime();
+			m_policy.referenced(slot >> m_way_bits, slot);
 		}
 
-		public void setReferencedTime(int time) {
-			referenced_time = time;
+		/**
+		 * Loads the mapping into a free slot of its set, or replaces one.
+		 * @param large  page_num->frame_num came from a large page, so the
+		 * whole large page gets loaded
+		 * @return the slot now holding the mapping
+		 */
+		public int updateTLB(int asid, long page_num, int frame_num, boolean large) {
+			int set;
+			long first_page = page_num;
+			int first_frame = frame_num;
+			if (large) {
+				set = setOf(asid, m_layout.leafKey(page_num));
+				first_page -= m_layout.leafIndex(page_num);
+				first_frame -= m_layout.leafIndex(page_num);
+			} else {
+				set = setOf(asid, page_num);
+			}
+			if (m_free_count[set] > 0) {
+				int slot = m_free[(set << m_way_bits) + --m_free_count[set]];
+				fill(set, slot, asid, first_page, first_frame, large);
+				if (m_log_loads)
+					logTLBLoadClean(first_page, first_frame);
+				return slot;
+			}
+			// All were valid, so the policy picks one to replace
+			int victim = m_policy.victim(set);
+			if (m_log_loads)
+				logTLBLoadSteal(first_page, first_frame, m_pages[victim], m_frames[victim]);
+			fill(set, victim, asid, first_page, first_frame, large);
+			return victim;
+		}
+
+		private void fill(int set, int slot, int asid, long page_num, int frame_num, boolean large) {
+			m_last_ixlate.forget(this, slot);
+			m_last_dxlate.forget(this, slot);
+			// A victim is still valid here
+			if (m_valid[slot] && m_large[slot])
+				-- m_large_count;
+			if (large)
+				++ m_large_count;
+			m_asids[slot] = asid;
+			m_frames[slot] = frame_num;
+			m_pages[slot] = page_num;
+			m_large[slot] = large;
+			m_valid[slot] = true;
+			m_times[slot] = accessTime();
+			m_policy.filled(set, slot);
+		}
+
+		/*
+		 * A view of one TLB slot, for callers of ICPU.getTLBEntries()
+		 */
+		class TLBEntry implements ITLBEntry {
+			final int m_slot;
+
+			TLBEntry(int slot) {
+				m_slot = slot;
+			}
+
+			@Override
+			public int getFrame() {
+				return m_frames[m_slot];
+			}
+
+			@Override
+			public int getFrameCount() {
+				return m_large[m_slot] ? m_layout.getLeafEntryCount() : 1;
+			}
+
+			@Override
+			public int getReferencedTime() {
+				return m_times[m_slot];
+			}
+
+			@Override
+			public void clearReferenced() {
+				m_times[m_slot] = 0;
+			}
+
+			@Override
+			public boolean isValid() {
+				return m_valid[m_slot];
+			}
 		}
 	}
 
 	private final IOS my_os;
-	private final long m_pageoffset_mask;
 	private final SystemInfo m_sysinfo;
-	private final TLB tlb;
+	private final AddressLayout m_layout;
+	// Instruction fetches look up m_itlb first and data accesses m_dtlb;
+	// they're the same TLB unless the TLB is split.  When there's a
+	// micro-TLB, both are backed by the (unified) L2 TLB m_l2tlb.
+	private final TLB m_itlb;
+	private final TLB m_dtlb;
+	private final TLB m_l2tlb;
+	private final TLB[] m_tlbs;		// each distinct TLB, backing level first
+	private final ITLBEntry[] m_tlb_entries;
+
+	/*
+	 * The last page translated by the fetch path (or the data path),
+	 * checked before the TLB or page table.  With a TLB it also remembers
+	 * the slot the mapping came from, so a hit still updates that slot.
+	 * Forgotten whenever the mapping might no longer hold.
+	 */
+	static class LastXlate {
+		long page = -1;
+		int frame;
+		TLB tlb;
+		int slot;
+		boolean large;		// page is mapped by a large page
+		IPageTableEntry pte;	// page's entry, if known; never with an inverted page table
+		long[] packed_leaf;		// or its packed leaf table, if known
+		int packed_ndx;			// and index in it
+
+		void remember(long page_num, int frame_num, TLB t, int tlb_slot, boolean large_page, IPageTableEntry entry) {
+			page = page_num;
+			frame = frame_num;
+			tlb = t;
+			slot = tlb_slot;
+			large = large_page;
+			pte = entry;
+			packed_leaf = null;
+		}
+
+		void forget() {
+			page = -1;
+		}
+
+		void forget(TLB t, int tlb_slot) {
+			if (tlb == t && slot == tlb_slot)
+				page = -1;
+		}
+	}
+	private final LastXlate m_last_ixlate = new LastXlate();
+	private final LastXlate m_last_dxlate = new LastXlate();
+
+	/*
+	 * Page-walk cache: a direct-mapped cache of leaf table references,
+	 * so a walk that hits skips every interior level.  Tagged and indexed
+	 * by the page's leaf key (with two levels, its L1 index).  Null if
+	 * PageWalkCacheEntryCountLog2 isn't set.  Only leaf tables are cached,
+	 * never a null entry or a large page, so the OS filling in an entry
+	 * or splitting a large page needs no flush.
+	 */
+	private final long[] m_pwc_keys;
+	private final Object[] m_pwc_leaves;		// IPageTableEntry[]s or packed long[]s
+	private final int m_pwc_mask;
+
+	// The current walk's index at each level, for logging a null entry
+	private final int[] m_walk_ndx;
+
+	// Whether the last successful xlatePageTable() went through a large page
+	private boolean m_walked_large_page = false;
+
+	// The entry it went through (null with an inverted page table), or
+	// the packed leaf table and index of its word
+	private IPageTableEntry m_walked_pte = null;
+	private long[] m_walked_leaf = null;
+	private int m_walked_ndx;
+
+	// Page table entries read by the current walk
+	private int m_walk_probes = 0;
+
+	// LRU replacement needs the time of each access; CLOCK only needs
+	// to know there was one, so the page walk and the TLBs skip
+	// Simulator.getMonotonicInt() (see SystemInfo.isTimedAccesses())
+	private final boolean m_time_accesses;
+
+	// Walked instead of the PTBR's tree if PageTableFormat is inverted
+	private final InvertedPageTable m_ipt;
 
 	/**
 	 * Constructor used by Simulator for each CPU
@@ -147,8 +425,61 @@ public class CPU extends CPUBase {
 		super(id);	// Leave this as the first statement 
 		m_sysinfo = info;
 		my_os = os;
-		m_pageoffset_mask = -1 + (1 << m_sysinfo.getPageSizeBytesLog2());
-		tlb = new TLB(m_sysinfo.getTLBEntryCount());
+		m_layout = m_sysinfo.getAddressLayout();
+		m_ipt = m_sysinfo.getInvertedPageTable();
+		m_zero_frame = m_sysinfo.getZeroFrame();
+		m_time_accesses = m_sysinfo.isTimedAccesses();
+		final boolean micro = m_sysinfo.getL1TLBEntryCount() > 0;
+		final boolean split = m_sysinfo.getITLBEntryCount() > 0;
+		// With a micro-TLB, the main TLB is the L2.  Otherwise it's the
+		// (data) L1, backed directly by the page walk.
+		TLB main = new TLB(m_sysinfo.getTLBEntryCount(), m_sysinfo.getTLBAssociativity(),
+				m_sysinfo.getTLBPolicy(), true, micro ? TLB_L2 : TLB_L1);
+		if (micro) {
+			m_l2tlb = main;
+			m_dtlb = new TLB(m_sysinfo.getL1TLBEntryCount(), m_sysinfo.getL1TLBAssociativity(),
+					m_sysinfo.getL1TLBPolicy(), false, TLB_L1);
+		} else {
+			m_l2tlb = null;
+			m_dtlb = main;
+		}
+		if (split) {
+			m_itlb = new TLB(m_sysinfo.getITLBEntryCount(), m_sysinfo.getITLBAssociativity(),
+					m_sysinfo.getITLBPolicy(), !micro, TLB_ITLB);
+		} else {
+			m_itlb = m_dtlb;
+		}
+		if (micro && split)
+			m_tlbs = new TLB[] { m_l2tlb, m_dtlb, m_itlb };
+		else if (micro)
+			m_tlbs = new TLB[] { m_l2tlb, m_dtlb };
+		else if (split)
+			m_tlbs = new TLB[] { m_dtlb, m_itlb };
+		else
+			m_tlbs = new TLB[] { m_dtlb };
+		// L1 entries go last: for a page held in both levels, the L1
+		// entry carries the most recent referenced time.
+		int entry_count = 0;
+		for (TLB t : m_tlbs)
+			entry_count += t.TLBEntryArray.length;
+		m_tlb_entries = new ITLBEntry[entry_count];
+		entry_count = 0;
+		for (TLB t : m_tlbs) {
+			System.arraycopy(t.TLBEntryArray, 0, m_tlb_entries, entry_count, t.TLBEntryArray.length);
+			entry_count += t.TLBEntryArray.length;
+		}
+		final int pwc_entry_count = m_sysinfo.getPageWalkCacheEntryCount();
+		if (pwc_entry_count > 0) {
+			m_pwc_keys = new long[pwc_entry_count];
+			m_pwc_leaves = new Object[pwc_entry_count];
+			m_pwc_mask = pwc_entry_count - 1;
+			Arrays.fill(m_pwc_keys, -1L);
+		} else {
+			m_pwc_keys = null;
+			m_pwc_leaves = null;
+			m_pwc_mask = 0;
+		}
+		m_walk_ndx = new int[m_layout.getLevelCount()];
 	}
 
 	/**
@@ -159,22 +490,84 @@ public class CPU extends CPUBase {
 	 */
 	@Override
 	public long vaddr2paddr(final long vaddr, final int fnum) {
-		long paddr;
-		paddr = fnum << m_sysinfo.getPageSizeBytesLog2();
-		long paddr_o = vaddr2pageoffset(vaddr);
-		paddr = paddr | paddr_o;
-		return paddr;
+		return m_layout.frame2paddr(fnum) | m_layout.vaddr2pageoffset(vaddr);
+	}
+
+	@Override
+	public void setPTBR(Object[] ptbr) {
+		forgetLastXlates();
+		flushPageWalkCache();
+		super.setPTBR(ptbr);
+	}
+
+	/**
+	 * Drops all cached references to leaf tables
+	 */
+	private void flushPageWalkCache() {
+		if (m_pwc_keys != null) {
+			Arrays.fill(m_pwc_keys, -1L);
+			Arrays.fill(m_pwc_leaves, null);
+		}
+	}
+
+	@Override
+	public void setASID(int asid) {
+		forgetLastXlates();
+		super.setASID(asid);
+	}
+
+	@Override
+	public void setPageTableTag(int tag) {
+		forgetLastXlates();
+		super.setPageTableTag(tag);
+	}
+
+	void forgetLastXlates() {
+		m_last_ixlate.forget();
+		m_last_dxlate.forget();
 	}
 
 	@Override
 	public void invalidateTLB() {
+		forgetLastXlates();
 		logTLBInvalidate();
-		tlb.invalidate();
+		for (TLB t : m_tlbs)
+			t.invalidate();
+	}
+
+	/**
+	 * Without a TLB (no -t), this only drops the page from the
+	 * last-translation cache.
+	 */
+	@Override
+	public void invalidateTLBPage(int asid, long page) {
+		forgetLastXlates();
+		if (!TLB_SUPPORTED)
+			return;
+		logTLBInvalidatePage(page);
+		for (TLB t : m_tlbs)
+			t.invalidatePages(asid, page, 1);
+	}
+
+	@Override
+	public void invalidateTLBPages(int asid, long start_page, int page_count) {
+		forgetLastXlates();
+		logTLBInvalidatePages(asid, start_page, page_count);
+		for (TLB t : m_tlbs)
+			t.invalidatePages(asid, start_page, page_count);
+	}
+
+	@Override
+	public void invalidateTLBASID(int asid) {
+		forgetLastXlates();
+		logTLBInvalidateASID(asid);
+		for (TLB t : m_tlbs)
+			t.invalidateASID(asid);
 	}
 
 	@Override
 	public ITLBEntry[] getTLBEntries() {
-		return tlb.getTLBEntries();
+		return m_tlb_entries;
 	}
 
 	@Override
@@ -183,49 +576,219 @@ public class CPU extends CPUBase {
 	}
 	
 	public int xlatePageTable(long vaddr, boolean log) {
-		IPageTableEntry pte = null;
-		int page_num = vaddr2page(vaddr);
-		int l1_ndx =   page_to_l1index(page_num);
-		int l2_ndx =   page_to_l2index(page_num);
-		try {
-			pte = getPTBR()[l1_ndx][l2_ndx];
-		} catch (ArrayIndexOutOfBoundsException e) {
+		m_walk_probes = 0;
+		int fnum = walkPageTable(vaddr, log);
+		logPageTableWalk(m_walk_probes);
+		return fnum;
+	}
+
+	private int walkPageTable(long vaddr, boolean log) {
+		long page_num = vaddr2page(vaddr);
+		// Outside the address space (or negative)
+		if (page_num < 0 || page_num >= m_layout.getPageCount()) {
 			logXlateFault(page_num);
 			return -1;
-		} catch (NullPointerException e) {
-			if (getPTBR()[l1_ndx] == null)
-				logPTEL1IndexNull(l1_ndx);
+		}
+		if (m_ipt != null)
+			return walkInverted(page_num, log);
+		Object entry = walkToLeaf(getPTBR(), page_num);
+		if (entry == null) {
 			logXlateFault(page_num);
 			return -1;
 		}
 
-		if (pte == null) {
-			logPTEIsNull(l1_ndx, l2_ndx);
-			logXlateFault(page_num);
-			return -1;
+		int leaf_ndx = m_layout.leafIndex(page_num);
+		if (entry instanceof long[])
+			return walkPacked((long[]) entry, leaf_ndx, page_num, log);
+		IPageTableEntry pte;
+		m_walked_large_page = entry instanceof IPageTableEntry;
+		if (m_walked_large_page) {
+			// A large page: its frames are contiguous, so there's no leaf table
+			pte = (IPageTableEntry) entry;
+		} else {
+			// Leaf tables all have m_layout.getLeafEntryCount() entries, so leaf_ndx is in range
+			pte = ((IPageTableEntry[]) entry)[leaf_ndx];
+			++ m_walk_probes;
+			if (pte == null) {
+				logNullEntry(page_num, m_layout.getLevelCount() - 1);
+				logXlateFault(page_num);
+				return -1;
+			}
 		}
 
 		if (pte.isResident()) {
 			int fnum = pte.getFrameNumber();
+			if (m_walked_large_page)
+				fnum += leaf_ndx;
+			if (log) {
+				logXlateHit(page_num, fnum);
+				if (m_walked_large_page)
+					logLargePageHit();
+			}
+			pte.setAccessed(accessTime());
+			m_walked_pte = pte;
+			m_walked_leaf = null;
+			return fnum;
+		}
+		logXlateFault(page_num);
+		return -1;
+	}
+
+	/**
+	 * The end of walkPageTable() for a packed leaf table: decodes the
+	 * page's word in place and sets its accessed bit.
+	 */
+	private int walkPacked(long[] leaf, int leaf_ndx, long page_num, boolean log) {
+		long word = leaf[leaf_ndx];
+		++ m_walk_probes;
+		m_walked_large_page = false;
+		if (word == 0) {
+			logNullEntry(page_num, m_layout.getLevelCount() - 1);
+			logXlateFault(page_num);
+			return -1;
+		}
+		if (PackedPTE.isResident(word)) {
+			int fnum = PackedPTE.getFrameNumber(word);
 			if (log)
 				logXlateHit(page_num, fnum);
-			my_os.setFrameReferencedTime(fnum, Simulator.getMonotonicInt());
+			leaf[leaf_ndx] = word | PackedPTE.ACCESSED;
+			m_walked_pte = null;
+			m_walked_leaf = leaf;
+			m_walked_ndx = leaf_ndx;
 			return fnum;
 		}
 		logXlateFault(page_num);
 		return -1;
 	}
 
-	int page_to_l1index(int page_num) {
-		return page_num >> (m_sysinfo.getPageCountLog2() - m_sysinfo.getPageTableLevel1EntryCountLog2());
+	/**
+	 * Walks the interior levels of the page table, or takes the result
+	 * from the page-walk cache if it's enabled and holds it.
+	 * @param page_num  must be in range
+	 * @return the last interior level's entry for page_num: its leaf
+	 * table (IPageTableEntry[] or packed long[]), or a large page's
+	 * IPageTableEntry.  If some level's entry
+	 * is null, logs where and returns null.
+	 */
+	private Object walkToLeaf(Object[] ptbr, long page_num) {
+		long key = 0;
+		int i = 0;
+		if (m_pwc_keys != null) {
+			key = m_layout.leafKey(page_num);
+			i = (int) key & m_pwc_mask;
+			if (m_pwc_keys[i] == key) {
+				logPageWalkCacheHit();
+				return m_pwc_leaves[i];
+			}
+			logPageWalkCacheMiss();
+		}
+		final int last = m_layout.getLevelCount() - 2;
+		Object[] node = ptbr;
+		for (int level = 0; ; ++level) {
+			Object entry = node[m_layout.levelIndex(level, page_num)];
+			++ m_walk_probes;
+			if (entry == null) {
+				logNullEntry(page_num, level);
+				return null;
+			}
+			if (level == last) {
+				if (m_pwc_keys != null && !(entry instanceof IPageTableEntry)) {
+					m_pwc_keys[i] = key;
+					m_pwc_leaves[i] = entry;
+				}
+				return entry;
+			}
+			node = (Object[]) entry;
+		}
+	}
+
+	/**
+	 * Looks page_num up in the inverted page table: reads the anchor of
+	 * its hash bucket, then follows the chain until a frame's entry holds
+	 * this address space's page_num.  A page with no entry isn't resident.
+	 * @param page_num  must be in range
+	 */
+	private int walkInverted(long page_num, boolean log) {
+		final int tag = getPageTableTag();
+		++ m_walk_probes;
+		for (int f = m_ipt.first(m_ipt.bucketOf(tag, page_num)); f >= 0; f = m_ipt.next(f)) {
+			++ m_walk_probes;
+			if (m_ipt.matches(f, tag, page_num)) {
+				m_walked_large_page = false;
+				if (log)
+					logXlateHit(page_num, f);
+				m_ipt.setAccessed(f, accessTime());
+				m_walked_pte = null;
+				m_walked_leaf = null;
+				return f;
+			}
+		}
+		logXlateFault(page_num);
+		return -1;
+	}
+
+	/**
+	 * Logs that page_num's entry at level is null.
+	 */
+	private void logNullEntry(long page_num, int level) {
+		for (int l = 0; l <= level; ++l)
+			m_walk_ndx[l] = m_layout.levelIndex(l, page_num);
+		logPTENull(m_walk_ndx, level, level == m_layout.getLevelCount() - 1);
 	}
 
-	int page_to_l2index(int page_num) {
-		return page_num % (1 << (m_sysinfo.getPageCountLog2() - m_sysinfo.getPageTableLevel1EntryCountLog2()));
+	long vaddr2page(long vaddr) {
+		return m_layout.vaddr2page(vaddr);
 	}
 
-	int vaddr2page(long vaddr) {
-		return (int) (vaddr >> m_sysinfo.getPageSizeBytesLog2());
+	/**
+	 * @return what to record as the accessed time of an entry
+	 */
+	private int accessTime() {
+		return m_time_accesses ? Simulator.getMonotonicInt() : 1;
+	}
+
+	/**
+	 * Called by CPUBase once an instruction that writes memory has its
+	 * data address translated, which left the page in m_last_dxlate.
+	 * A TLB hit doesn't know the page's entry, so the first write
+	 * through it looks the entry up (much as hardware sets a TLB entry's
+	 * dirty bit by walking to the PTE).
+	 */
+	@Override
+	public void setDirty(long vaddr, int frame_num) {
+		if (m_ipt != null) {
+			m_ipt.setDirty(frame_num);
+			return;
+		}
+		LastXlate last = m_last_dxlate;
+		if (last.pte == null && last.packed_leaf == null)
+			findPTE(last);
+		if (last.packed_leaf != null)
+			last.packed_leaf[last.packed_ndx] |= PackedPTE.DIRTY;
+		else
+			last.pte.setDirty();
+	}
+
+	/**
+	 * Like walkToLeaf(), without logging or the page-walk cache.  Fills
+	 * in last's entry (or large page), or packed leaf table and index.
+	 * last.page must be mapped.
+	 */
+	private void findPTE(LastXlate last) {
+		Object node = getPTBR();
+		for (int level = 0; level < m_layout.getLevelCount() - 1; ++level) {
+			node = ((Object[]) node)[m_layout.levelIndex(level, last.page)];
+			if (node instanceof IPageTableEntry) {
+				last.pte = (IPageTableEntry) node;
+				return;
+			}
+		}
+		if (node instanceof long[]) {
+			last.packed_leaf = (long[]) node;
+			last.packed_ndx = m_layout.leafIndex(last.page);
+		} else {
+			last.pte = ((IPageTableEntry[]) node)[m_layout.leafIndex(last.page)];
+		}
 	}
 
 	/**
@@ -237,8 +800,8 @@ public class CPU extends CPUBase {
 	 * When xlate() fails to find a valid mapping with a resident page,
 	 * xlate() must call:  logXlateFault(page_number).
 	 * Otherwise, xlate() must call: logXlateHit(page_number, frame_number). 
-	 * Note that on a "hit", xlate() must call IOS.setFrameReferencedTime()
-	 * to ensure it knows how to track LRU.
+	 * Note that on a "hit", xlate() must set the entry's accessed time
+	 * (IPageTableEntry.setAccessed()), which the OS harvests to track LRU.
 	 */
 	public int xlate(final long virtual_address) {
 		// TLB_SUPPORTED is set to true iff the simulator
@@ -263,27 +826,116 @@ public class CPU extends CPUBase {
 	 * If NOT found in the PageTable, call LogPTEL1IndexNull or LogPTEIsNull()
 	 * (if appropriate), and logXlateFault().
 	 * If FOUND, select a TLBEnry to use for the mapping, and call 
-	 * tlbe.setReferenceTime(). << Unlike without TLB where we'd call IOS.setFrameReferencedTime
+	 * tlbe.setReferenceTime(). << Unlike without TLB where we'd call IPageTableEntry.setAccessed()
 	 */
 	public int xlateTLB(final long virtual_address) {
-		int page_num = vaddr2page(virtual_address);
-		TLBEntry result = tlb.searchTLB(page_num);
-		if (result != null) {
-			result.setReferencedTime(Simulator.getMonotonicInt());
-			logXlateHit(page_num, result.frame_number);
-			return result.frame_number;
-		}
-		else {
-			int frame_num = xlatePageTable(virtual_address, false);
-			if (frame_num >= 0 ) {
-				tlb.updateTLB(page_num, frame_num);
+		return xlateTLB(virtual_address, m_dtlb, m_last_dxlate);
+	}
+
+	/**
+	 * Called by CPUBase for instruction fetches.  Goes through the
+	 * I-TLB when the TLB is split.
+	 */
+	@Override
+	public int xlateInstruction(final long virtual_address) {
+		return xlate(virtual_address, m_itlb, m_last_ixlate);
+	}
+
+	/**
+	 * Called by CPUBase for an instruction's data address.  Goes through
+	 * the D-TLB when the TLB is split.
+	 */
+	@Override
+	public int xlateData(final long virtual_address) {
+		return xlate(virtual_address, m_dtlb, m_last_dxlate);
+	}
+
+	/**
+	 * Checks the last translation on this path before going to the TLB
+	 * (or page table).  A hit there is accounted exactly as the TLB or
+	 * page table hit it stands in for would have been.
+	 */
+	int xlate(final long virtual_address, final TLB first, final LastXlate last) {
+		long page_num = vaddr2page(virtual_address);
+		if (page_num == last.page) {
+			int frame_num = last.frame;
+			if (TLB_SUPPORTED) {
+				logTLBLevelHit(last.tlb.m_stat);
+				last.tlb.touch(last.slot);
+				logXlateHit(page_num, frame_num);
+			} else {
+				logXlateHit(page_num, frame_num);
+				if (last.pte != null)
+					last.pte.setAccessed(accessTime());
+				else if (last.packed_leaf != null)
+					last.packed_leaf[last.packed_ndx] |= PackedPTE.ACCESSED;
+				else
+					m_ipt.setAccessed(frame_num, accessTime());
 			}
+			if (last.large)
+				logLargePageHit();
 			return frame_num;
 		}
+		if (TLB_SUPPORTED) 
+			return xlateTLB(virtual_address, first, last);
+		int frame_num = xlatePageTable(virtual_address);
+		if (frame_num >= 0) {
+			last.remember(page_num, frame_num, null, -1, m_walked_large_page, m_walked_pte);
+			last.packed_leaf = m_walked_leaf;
+			last.packed_ndx = m_walked_ndx;
+		}
+		return frame_num;
+	}
+
+	/**
+	 * Looks the page up in first, then in the L2 TLB (if any), and
+	 * finally walks the page table, refilling the levels that missed.
+	 * The slot of first that ends up holding the mapping is remembered
+	 * in last.
+	 */
+	int xlateTLB(final long virtual_address, final TLB first, final LastXlate last) {
+		long page_num = vaddr2page(virtual_address);
+		int asid = getASID();
+		int slot = first.searchTLB(asid, page_num);
+		if (slot >= 0) {
+			logTLBLevelHit(first.m_stat);
+			first.touch(slot);
+			int frame_num = first.getFrame(slot, page_num);
+			last.remember(page_num, frame_num, first, slot, first.isLarge(slot), null);
+			logXlateHit(page_num, frame_num);
+			if (first.isLarge(slot))
+				logLargePageHit();
+			return frame_num;
+		}
+		logTLBLevelMiss(first.m_stat);
+		if (m_l2tlb != null) {
+			slot = m_l2tlb.searchTLB(asid, page_num);
+			if (slot >= 0) {
+				logTLBLevelHit(TLB_L2);
+				m_l2tlb.touch(slot);
+				int frame_num = m_l2tlb.getFrame(slot, page_num);
+				boolean large = m_l2tlb.isLarge(slot);
+				last.remember(page_num, frame_num, first, first.updateTLB(asid, page_num, frame_num, large), large, null);
+				logXlateHit(page_num, frame_num);
+				if (large)
+					logLargePageHit();
+				return frame_num;
+			}
+			logTLBLevelMiss(TLB_L2);
+		}
+		int frame_num = xlatePageTable(virtual_address, false);
+		if (frame_num >= 0 ) {
+			logTLBWalk(page_num, frame_num);
+			boolean large = m_walked_large_page;
+			if (m_l2tlb != null)
+				m_l2tlb.updateTLB(asid, page_num, frame_num, large);
+			last.remember(page_num, frame_num, first, first.updateTLB(asid, page_num, frame_num, large), large, null);
+		}
+		return frame_num;
 	}
 
 	long vaddr2pageoffset(final long vaddr) {
-		return vaddr & m_pageoffset_mask;
+		return m_layout.vaddr2pageoffset(vaddr);
 	}
 
 }
@@ -0,0 +1,51 @@
+package cpu;
+/**
+ * Title:
+ * Description:
+ * Copyright:    Copyright (c) 2012
+ * Company:      University of Texas at Austin
+ * @author R.L. Rockhold, Ph.D.
+ * @version 1.0
+ */
+
+/*
+ * CLOCK (second chance).  A hit just sets the slot's reference bit.
+ * Each set has a hand that sweeps its slots, clearing reference bits,
+ * until it finds one that's clear.
+ */
+class ClockTLBPolicy implements TLBReplacementPolicy {
+	private final int m_ways;
+	private final boolean[] m_referenced;
+	private final int[] m_hand;
+
+	ClockTLBPolicy(int entry_count, int sets, int ways) {
+		m_ways = ways;
+		m_referenced = new boolean[entry_count];
+		m_hand = new int[sets];
+	}
+
+	public void filled(int set, int slot) {
+		m_referenced[slot] = false;
+	}
+
+	public void referenced(int set, int slot) {
+		m_referenced[slot] = true;
+	}
+
+	public void invalidated(int set, int slot) {
+	}
+
+	public void reset() {
+	}
+
+	public int victim(int set) {
+		int base = set * m_ways;
+		while (true) {
+			int slot = base + m_hand[set];
+			m_hand[set] = (m_hand[set] + 1) % m_ways;
+			if (!m_referenced[slot])
+				return slot;
+			m_referenced[slot] = false;
+		}
+	}
+}
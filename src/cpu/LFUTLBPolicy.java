@@ -0,0 +1,54 @@
+package cpu;
+/**
+ * Title:
+ * Description:
+ * Copyright:    Copyright (c) 2012
+ * Company:      University of Texas at Austin
+ * @author R.L. Rockhold, Ph.D.
+ * @version 1.0
+ */
+
+/*
+ * Least frequently used.  Counts hits since each slot was filled;
+ * the victim search scans the set for the smallest count (the oldest
+ * slot wins a tie).
+ */
+class LFUTLBPolicy implements TLBReplacementPolicy {
+	private final int m_ways;
+	private final int[] m_counts;
+	private final long[] m_filled;
+	private long m_fills = 0;
+
+	LFUTLBPolicy(int entry_count, int ways) {
+		m_ways = ways;
+		m_counts = new int[entry_count];
+		m_filled = new long[entry_count];
+	}
+
+	public void filled(int set, int slot) {
+		m_counts[slot] = 0;
+		m_filled[slot] = ++ m_fills;
+	}
+
+	public void referenced(int set, int slot) {
+		if (m_counts[slot] != Integer.MAX_VALUE)
+			++ m_counts[slot];
+	}
+
+	public void invalidated(int set, int slot) {
+	}
+
+	public void reset() {
+	}
+
+	public int victim(int set) {
+		int base = set * m_ways;
+		int victim = base;
+		for (int slot = base + 1; slot < base + m_ways; ++slot) {
+			if (m_counts[slot] < m_counts[victim]
+					|| (m_counts[slot] == m_counts[victim] && m_filled[slot] < m_filled[victim]))
+				victim = slot;
+		}
+		return victim;
+	}
+}
@@ -0,0 +1,83 @@
+package cpu;
+/**
+ * Title:
+ * Description:
+ * Copyright:    Copyright (c) 2012
+ * Company:      University of Texas at Austin
+ * @author R.L. Rockhold, Ph.D.
+ * @version 1.0
+ */
+
+import java.util.Arrays;
+
+/*
+ * LRU and FIFO: valid slots are kept on a per-set doubly-linked list
+ * (m_head is the newest end, m_tail the victim end).  LRU moves a
+ * slot to the head on every hit; FIFO leaves the list in fill order.
+ */
+class ListTLBPolicy implements TLBReplacementPolicy {
+	private final boolean m_move_on_hit;
+	private final int[] m_prev;
+	private final int[] m_next;
+	private final int[] m_head;
+	private final int[] m_tail;
+
+	ListTLBPolicy(int entry_count, int sets, boolean move_on_hit) {
+		m_move_on_hit = move_on_hit;
+		m_prev = new int[entry_count];
+		m_next = new int[entry_count];
+		m_head = new int[sets];
+		m_tail = new int[sets];
+		reset();
+	}
+
+	public void filled(int set, int slot) {
+		push(set, slot);
+	}
+
+	public void referenced(int set, int slot) {
+		if (m_move_on_hit && m_head[set] != slot) {
+			unlink(set, slot);
+			push(set, slot);
+		}
+	}
+
+	public void invalidated(int set, int slot) {
+		unlink(set, slot);
+	}
+
+	public void reset() {
+		Arrays.fill(m_head, -1);
+		Arrays.fill(m_tail, -1);
+	}
+
+	public int victim(int set) {
+		int slot = m_tail[set];
+		unlink(set, slot);
+		return slot;
+	}
+
+	private void push(int set, int slot) {
+		int head = m_head[set];
+		m_prev[slot] = -1;
+		m_next[slot] = head;
+		if (head >= 0)
+			m_prev[head] = slot;
+		else
+			m_tail[set] = slot;
+		m_head[set] = slot;
+	}
+
+	private void unlink(int set, int slot) {
+		int prev = m_prev[slot];
+		int next = m_next[slot];
+		if (prev >= 0)
+			m_next[prev] = next;
+		else
+			m_head[set] = next;
+		if (next >= 0)
+			m_prev[next] = prev;
+		else
+			m_tail[set] = prev;
+	}
+}
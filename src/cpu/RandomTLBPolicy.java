@@ -0,0 +1,40 @@
+package cpu;
+/**
+ * Title:
+ * Description:
+ * Copyright:    Copyright (c) 2012
+ * Company:      University of Texas at Austin
+ * @author R.L. Rockhold, Ph.D.
+ * @version 1.0
+ */
+
+import java.util.Random;
+
+/*
+ * Random replacement.  Seeded, so runs are repeatable.
+ */
+class RandomTLBPolicy implements TLBReplacementPolicy {
+	private final int m_ways;
+	private final Random m_random;
+
+	RandomTLBPolicy(int ways, long seed) {
+		m_ways = ways;
+		m_random = new Random(seed);
+	}
+
+	public void filled(int set, int slot) {
+	}
+
+	public void referenced(int set, int slot) {
+	}
+
+	public void invalidated(int set, int slot) {
+	}
+
+	public void reset() {
+	}
+
+	public int victim(int set) {
+		return set * m_ways + m_random.nextInt(m_ways);
+	}
+}
@@ -0,0 +1,43 @@
+package cpu;
+/**
+ * Title:
+ * Description:
+ * Copyright:    Copyright (c) 2012
+ * Company:      University of Texas at Austin
+ * @author R.L. Rockhold, Ph.D.
+ * @version 1.0
+ */
+
+/**
+ * Decides which slot of a full TLB set gets replaced.
+ * Slots are numbered across the whole TLB; set s owns slots
+ * s*ways up to (s+1)*ways-1.  The TLB itself tracks which
+ * slots are invalid and always refills those first, so victim()
+ * is only asked about sets whose slots are all valid.
+ */
+interface TLBReplacementPolicy {
+	/**
+	 * slot was just loaded with a new mapping
+	 */
+	void filled(int set, int slot);
+
+	/**
+	 * A lookup hit slot
+	 */
+	void referenced(int set, int slot);
+
+	/**
+	 * slot no longer holds a valid mapping
+	 */
+	void invalidated(int set, int slot);
+
+	/**
+	 * Every slot is now invalid
+	 */
+	void reset();
+
+	/**
+	 * @return the slot of (full) set to replace.  It will be filled() next.
+	 */
+	int victim(int set);
+}
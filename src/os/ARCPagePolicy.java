@@ -0,0 +1,134 @@
+package os;
+/**
+ * Title:
+ * Description:
+ * Copyright:    Copyright (c) 2012
+ * Company:      University of Texas at Austin
+ * @author R.L. Rockhold, Ph.D.
+ * @version 1.0
+ */
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/*
+ * ARC (Megiddo and Modha).  T1 holds frames referenced once since they
+ * were allocated, T2 frames referenced again; both are LRU ordered.
+ * B1 and B2 remember the pages last evicted from each.  A fault on a
+ * page in B1 grows p, T1's target size, and one in B2 shrinks it, and
+ * either way the page comes back into T2.
+ *
+ * The faulting access itself shows up as the first reference, so it
+ * takes a second, later one to move a frame from T1 to T2.
+ */
+class ARCPagePolicy implements PageReplacementPolicy {
+	private static final int T1 = 0;
+	private static final int T2 = 1;
+	private final FrameLists m_lists;
+	private final PageKey[] m_keys;
+	private final int[] m_last_time;
+	private final int[] m_refs;
+	private final int[] m_ref_fault;	// the fault during which each was last referenced
+	private int m_faults = 0;
+	private final LinkedHashSet<PageKey> m_b1 = new LinkedHashSet<PageKey>();
+	private final LinkedHashSet<PageKey> m_b2 = new LinkedHashSet<PageKey>();
+	private final int m_capacity;
+	private int m_p = 0;
+	// Set by faulted(), for the allocated() that follows
+	private PageKey m_faulted = null;
+	private LinkedHashSet<PageKey> m_faulted_ghost = null;
+
+	ARCPagePolicy(int frame_count) {
+		m_lists = new FrameLists(frame_count, 2);
+		m_keys = new PageKey[frame_count];
+		m_last_time = new int[frame_count];
+		m_refs = new int[frame_count];
+		m_ref_fault = new int[frame_count];
+		m_capacity = frame_count;
+	}
+
+	public void faulted(int pid, long page) {
+		++ m_faults;
+		m_faulted = new PageKey(pid, page);
+		m_faulted_ghost = null;
+		int b1 = m_b1.size();
+		int b2 = m_b2.size();
+		if (m_b1.contains(m_faulted)) {
+			m_p = Math.min(m_capacity, m_p + Math.max(1, b2 / b1));
+			m_faulted_ghost = m_b1;
+		} else if (m_b2.contains(m_faulted)) {
+			m_p = Math.max(0, m_p - Math.max(1, b1 / b2));
+			m_faulted_ghost = m_b2;
+		}
+	}
+
+	public void allocated(int frame, int time, int pid, long page) {
+		PageKey key = new PageKey(pid, page);
+		if (m_faulted_ghost != null && key.equals(m_faulted)) {
+			m_faulted_ghost.remove(key);
+			m_lists.addTail(T2, frame);
+		} else {
+			m_lists.addTail(T1, frame);
+		}
+		m_faulted = null;
+		m_faulted_ghost = null;
+		m_keys[frame] = key;
+		m_last_time[frame] = time;
+		m_refs[frame] = 0;
+	}
+
+	public void referenced(int frame, int time) {
+		int list = m_lists.listOf(frame);
+		if (list < 0 || time <= m_last_time[frame])
+			return;
+		m_last_time[frame] = time;
+		m_ref_fault[frame] = m_faults;
+		if (++ m_refs[frame] < 2 && list == T1)
+			return;
+		m_lists.remove(frame);
+		m_lists.addTail(T2, frame);
+	}
+
+	public void freed(int frame) {
+		m_lists.remove(frame);
+		m_keys[frame] = null;
+	}
+
+	public int victim() {
+		int t1 = m_lists.size(T1);
+		boolean from_t1 = t1 > 0
+				&& (t1 > m_p || (t1 == m_p && m_faulted_ghost == m_b2) || m_lists.size(T2) == 0);
+		int frame = oldestNotRecent(from_t1 ? T1 : T2);
+		if (frame < 0) {
+			from_t1 = !from_t1;
+			frame = oldestNotRecent(from_t1 ? T1 : T2);
+		}
+		if (frame < 0) {
+			from_t1 = t1 > 0;
+			frame = m_lists.head(from_t1 ? T1 : T2);
+		}
+		m_lists.remove(frame);
+		(from_t1 ? m_b1 : m_b2).add(m_keys[frame]);
+		m_keys[frame] = null;
+		// |T1| + |B1| <= c, and all four lists <= 2c
+		while (m_lists.size(T1) + m_b1.size() > m_capacity && !m_b1.isEmpty())
+			removeOldest(m_b1);
+		while (m_lists.size(T1) + m_lists.size(T2) + m_b1.size() + m_b2.size() > 2 * m_capacity
+				&& !m_b2.isEmpty())
+			removeOldest(m_b2);
+		return frame;
+	}
+
+	private int oldestNotRecent(int list) {
+		int frame = m_lists.head(list);
+		while (frame >= 0 && m_ref_fault[frame] == m_faults)
+			frame = m_lists.next(frame);
+		return frame;
+	}
+
+	static void removeOldest(LinkedHashSet<PageKey> set) {
+		Iterator<PageKey> it = set.iterator();
+		it.next();
+		it.remove();
+	}
+}
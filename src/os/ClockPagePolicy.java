@@ -0,0 +1,63 @@
+package os;
+/**
+ * Title:
+ * Description:
+ * Copyright:    Copyright (c) 2012
+ * Company:      University of Texas at Austin
+ * @author R.L. Rockhold, Ph.D.
+ * @version 1.0
+ */
+
+import simulator.Simulator;
+
+/*
+ * CLOCK (second chance).  A reference sets the frame's reference bit,
+ * unless it's from before the hand last cleared it.  The hand sweeps
+ * the frames in frame number order, clearing reference bits, and stops
+ * at the first frame in use whose bit is clear.
+ */
+class ClockPagePolicy implements PageReplacementPolicy {
+	private final boolean[] m_in_use;
+	private final boolean[] m_referenced;
+	private final int[] m_cleared;
+	private int m_hand = 0;
+
+	ClockPagePolicy(int frame_count) {
+		m_in_use = new boolean[frame_count];
+		m_referenced = new boolean[frame_count];
+		m_cleared = new int[frame_count];
+	}
+
+	public void faulted(int pid, long page) {
+	}
+
+	public void allocated(int frame, int time, int pid, long page) {
+		m_in_use[frame] = true;
+		m_referenced[frame] = time > m_cleared[frame];
+	}
+
+	public void referenced(int frame, int time) {
+		if (m_in_use[frame] && time > m_cleared[frame])
+			m_referenced[frame] = true;
+	}
+
+	public void freed(int frame) {
+		m_in_use[frame] = false;
+	}
+
+	public int victim() {
+		while (true) {
+			int frame = m_hand;
+			m_hand = (m_hand + 1) % m_in_use.length;
+			if (!m_in_use[frame])
+				continue;
+			if (m_referenced[frame]) {
+				m_referenced[frame] = false;
+				m_cleared[frame] = Simulator.getMonotonicInt();
+				continue;
+			}
+			m_in_use[frame] = false;
+			return frame;
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package os;
+/**
+ * Title:
+ * Description:
+ * Copyright:    Copyright (c) 2012
+ * Company:      University of Texas at Austin
+ * @author R.L. Rockhold, Ph.D.
+ * @version 1.0
+ */
+
+/*
+ * FIFO: the frame allocated longest ago goes, however recently it
+ * was referenced.
+ */
+class FIFOPagePolicy implements PageReplacementPolicy {
+	private final FrameLists m_lists;
+
+	FIFOPagePolicy(int frame_count) {
+		m_lists = new FrameLists(frame_count, 1);
+	}
+
+	public void faulted(int pid, long page) {
+	}
+
+	public void allocated(int frame, int time, int pid, long page) {
+		m_lists.addTail(0, frame);
+	}
+
+	public void referenced(int frame, int time) {
+	}
+
+	public void freed(int frame) {
+		m_lists.remove(frame);
+	}
+
+	public int victim() {
+		int frame = m_lists.head(0);
+		m_lists.remove(frame);
+		return frame;
+	}
+}
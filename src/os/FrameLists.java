@@ -0,0 +1,105 @@
+package os;
+/**
+ * Title:
+ * Description:
+ * Copyright:    Copyright (c) 2012
+ * Company:      University of Texas at Austin
+ * @author R.L. Rockhold, Ph.D.
+ * @version 1.0
+ */
+
+import java.util.Arrays;
+
+/*
+ * Doubly-linked lists of frames, linked through arrays indexed by
+ * frame number.  A frame is on at most one of the lists at a time.
+ * Heads are the oldest ends.
+ */
+class FrameLists {
+	private final int[] m_prev;
+	private final int[] m_next;
+	private final int[] m_list;		// the list each frame is on, or -1
+	private final int[] m_head;
+	private final int[] m_tail;
+	private final int[] m_size;
+
+	FrameLists(int frame_count, int lists) {
+		m_prev = new int[frame_count];
+		m_next = new int[frame_count];
+		m_list = new int[frame_count];
+		m_head = new int[lists];
+		m_tail = new int[lists];
+		m_size = new int[lists];
+		Arrays.fill(m_list, -1);
+		Arrays.fill(m_head, -1);
+		Arrays.fill(m_tail, -1);
+	}
+
+	int listOf(int frame) {
+		return m_list[frame];
+	}
+
+	int head(int list) {
+		return m_head[list];
+	}
+
+	int tail(int list) {
+		return m_tail[list];
+	}
+
+	int prev(int frame) {
+		return m_prev[frame];
+	}
+
+	int next(int frame) {
+		return m_next[frame];
+	}
+
+	int size(int list) {
+		return m_size[list];
+	}
+
+	void addTail(int list, int frame) {
+		insertAfter(list, m_tail[list], frame);
+	}
+
+	/**
+	 * Links frame into list just after frame after (at the head if after is -1).
+	 */
+	void insertAfter(int list, int after, int frame) {
+		int next = after >= 0 ? m_next[after] : m_head[list];
+		m_prev[frame] = after;
+		m_next[frame] = next;
+		if (after >= 0)
+			m_next[after] = frame;
+		else
+			m_head[list] = frame;
+		if (next >= 0)
+			m_prev[next] = frame;
+		else
+			m_tail[list] = frame;
+		m_list[frame] = list;
+		++ m_size[list];
+	}
+
+	/**
+	 * Unlinks frame from whichever list it's on, if any.
+	 */
+	void remove(int frame) {
+		int list = m_list[frame];
+		if (list < 0)
+			return;
+		int prev = m_prev[frame];
+		int next = m_next[frame];
+		if (prev >= 0)
+			m_next[prev] = next;
+		else
+			m_head[list] = next;
+		if (next >= 0)
+			m_prev[next] = prev;
+		else
+			m_tail[list] = prev;
+		m_list[frame] = -1;
+		-- m_size[list];
+	}
+}
@@ -0,0 +1,182 @@
+package os;
+/**
+ * Title:
+ * Description:
+ * Copyright:    Copyright (c) 2012
+ * Company:      University of Texas at Austin
+ * @author R.L. Rockhold, Ph.D.
+ * @version 1.0
+ */
+
+/**
+ * The free frames, handed out in the order they were freed (initially
+ * in frame number order).  A ring of frame numbers keeps the order, and
+ * a bitmap (a bit per frame, set if free) answers whether a frame is
+ * free and finds aligned runs of free frames for large pages.
+ * 
+ * Free frames are dirty (their old contents are still there) until
+ * zeroed by takeDirty() and addZeroed(), which move them to a second
+ * ring.  Zeroed frames go first to those who need a zeroed frame, dirty
+ * ones to those who'll overwrite it anyway, and stay marked as zeroed
+ * until whoever allocated them calls claimZeroed().
+ */
+class FreeFrames {
+	/*
+	 * Frame numbers in FIFO order
+	 */
+	private static class Ring {
+		private final int[] m_frames;
+		private int m_head = 0;		// index in m_frames of the next frame to hand out
+		private int m_count = 0;
+
+		Ring(int capacity) {
+			m_frames = new int[capacity];
+		}
+
+		int take() {
+			int frame = m_frames[m_head];
+			m_head = (m_head + 1) % m_frames.length;
+			-- m_count;
+			return frame;
+		}
+
+		void add(int frame) {
+			m_frames[(m_head + m_count++) % m_frames.length] = frame;
+		}
+
+		/**
+		 * Removes frames base up to base+count-1.  The rest keep their order.
+		 */
+		void squeeze(int base, int count) {
+			int kept = 0;
+			for (int i = 0; i < m_count; ++i) {
+				int frame = m_frames[(m_head + i) % m_frames.length];
+				if (frame < base || frame >= base + count)
+					m_frames[(m_head + kept++) % m_frames.length] = frame;
+			}
+			m_count = kept;
+		}
+	}
+
+	private final Ring m_dirty;
+	private final Ring m_zeroed;
+	private final long[] m_bits;
+	private final long[] m_zeroed_bits;	// set from being zeroed until claimed
+
+	/**
+	 * All frame_count frames start out free (and dirty).
+	 */
+	FreeFrames(int frame_count) {
+		m_dirty = new Ring(frame_count);
+		m_zeroed = new Ring(frame_count);
+		m_bits = new long[(frame_count + 63) >>> 6];
+		m_zeroed_bits = new long[m_bits.length];
+		free(0, frame_count);
+	}
+
+	int size() {
+		return m_dirty.m_count + m_zeroed.m_count;
+	}
+
+	int dirtySize() {
+		return m_dirty.m_count;
+	}
+
+	int zeroedSize() {
+		return m_zeroed.m_count;
+	}
+
+	boolean isFree(int frame) {
+		return (m_bits[frame >>> 6] & (1L << frame)) != 0;
+	}
+
+	/**
+	 * @param zeroed  whether the caller needs the frame zeroed (or will
+	 *                overwrite it, so would rather not use up a zeroed one)
+	 * @return the frame zeroed longest ago, or the one freed longest ago
+	 *         if !zeroed (or if there's no frame of the kind preferred),
+	 *         now allocated; or -1 if none is free
+	 */
+	int allocate(boolean zeroed) {
+		if (size() == 0)
+			return -1;
+		Ring from = zeroed ? m_zeroed : m_dirty;
+		if (from.m_count == 0)
+			from = zeroed ? m_dirty : m_zeroed;
+		int frame = from.take();
+		m_bits[frame >>> 6] &= ~(1L << frame);
+		return frame;
+	}
+
+	/**
+	 * Allocates the first run of count free frames aligned to count (a
+	 * power of 2).  The rest keep their order.
+	 * @return the run's first frame, or -1 if there's no such run
+	 */
+	int allocateRun(int count) {
+		final int frame_count = m_dirty.m_frames.length;
+		for (int base = 0; base + count <= frame_count; base += count) {
+			if (!isRunFree(base, count))
+				continue;
+			for (int f = base; f < base + count; ++f)
+				m_bits[f >>> 6] &= ~(1L << f);
+			m_dirty.squeeze(base, count);
+			m_zeroed.squeeze(base, count);
+			return base;
+		}
+		return -1;
+	}
+
+	private boolean isRunFree(int base, int count) {
+		if (count < 64) {
+			long mask = ((1L << count) - 1) << base;
+			return (m_bits[base >>> 6] & mask) == mask;
+		}
+		for (int w = base >>> 6; w < (base + count) >>> 6; ++w) {
+			if (m_bits[w] != -1L)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return whether frame, just allocated, was zeroed while free (and
+	 *         from now on, false)
+	 */
+	boolean claimZeroed(int frame) {
+		boolean zeroed = (m_zeroed_bits[frame >>> 6] & (1L << frame)) != 0;
+		m_zeroed_bits[frame >>> 6] &= ~(1L << frame);
+		return zeroed;
+	}
+
+	/**
+	 * Takes the dirty frame freed longest ago, to be zeroed and handed
+	 * to addZeroed().  It stays free meanwhile, so mustn't be allocated.
+	 * @return the frame, or -1 if none is dirty
+	 */
+	int takeDirty() {
+		return m_dirty.m_count > 0 ? m_dirty.take() : -1;
+	}
+
+	void addZeroed(int frame) {
+		m_zeroed_bits[frame >>> 6] |= 1L << frame;
+		m_zeroed.add(frame);
+	}
+
+	void free(int frame) {
+		free(frame, 1);
+	}
+
+	/**
+	 * Frees frames first up to first+count-1, dirty, to be handed out
+	 * after those already free, lowest first.
+	 */
+	void free(int first, int count) {
+		for (int f = first; f < first + count; ++f) {
+			if (isFree(f))
+				throw new IllegalStateException("Freeing frame " + f + ", which is already free.");
+			m_bits[f >>> 6] |= 1L << f;
+			m_dirty.add(f);
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package os;
+/**
+ * Title:
+ * Description:
+ * Copyright:    Copyright (c) 2012
+ * Company:      University of Texas at Austin
+ * @author R.L. Rockhold, Ph.D.
+ * @version 1.0
+ */
+
+/*
+ * Least frequently used.  Counts the distinct references (by time) to
+ * each frame since it was allocated; the victim search scans for the
+ * smallest count (the frame allocated longest ago wins a tie).
+ */
+class LFUPagePolicy implements PageReplacementPolicy {
+	private final boolean[] m_in_use;
+	private final int[] m_counts;
+	private final int[] m_last_time;
+	private final long[] m_allocated;
+	private final int[] m_ref_fault;	// the fault during which each was last referenced
+	private long m_allocs = 0;
+	private int m_faults = 0;
+
+	LFUPagePolicy(int frame_count) {
+		m_in_use = new boolean[frame_count];
+		m_counts = new int[frame_count];
+		m_last_time = new int[frame_count];
+		m_allocated = new long[frame_count];
+		m_ref_fault = new int[frame_count];
+	}
+
+	public void faulted(int pid, long page) {
+		++ m_faults;
+	}
+
+	public void allocated(int frame, int time, int pid, long page) {
+		m_in_use[frame] = true;
+		m_counts[frame] = 0;
+		m_last_time[frame] = time;
+		m_allocated[frame] = ++ m_allocs;
+	}
+
+	public void referenced(int frame, int time) {
+		if (m_in_use[frame] && time > m_last_time[frame]) {
+			m_last_time[frame] = time;
+			m_ref_fault[frame] = m_faults;
+			if (m_counts[frame] < Integer.MAX_VALUE)
+				++ m_counts[frame];
+		}
+	}
+
+	public void freed(int frame) {
+		m_in_use[frame] = false;
+	}
+
+	public int victim() {
+		int best = -1;
+		for (int f = 0; f < m_in_use.length; ++f) {
+			if (!m_in_use[f])
+				continue;
+			if (best < 0 || lessUsed(f, best))
+				best = f;
+		}
+		m_in_use[best] = false;
+		return best;
+	}
+
+	private boolean lessUsed(int a, int b) {
+		boolean a_recent = m_ref_fault[a] == m_faults;
+		boolean b_recent = m_ref_fault[b] == m_faults;
+		if (a_recent != b_recent)
+			return b_recent;
+		return m_counts[a] < m_counts[b] || (m_counts[a] == m_counts[b] && m_allocated[a] < m_allocated[b]);
+	}
+}
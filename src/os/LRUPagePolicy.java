@@ -0,0 +1,109 @@
+package os;
+/**
+ * Title:
+ * Description:
+ * Copyright:    Copyright (c) 2012
+ * Company:      University of Texas at Austin
+ * @author R.L. Rockhold, Ph.D.
+ * @version 1.0
+ */
+
+/*
+ * LRU.  Frames in use are kept oldest first, ordered by their latest
+ * reference time and then by when they were allocated, so the head is
+ * the victim.  Harvested references come in frame order with times out
+ * of order (and a stale one, no newer than the frame's time, changes
+ * nothing), so frames allocated or referenced since the last victim()
+ * wait, unordered, on a pending list (each an O(1) move).  victim()
+ * sorts them once and merges them in from the tail, which only walks
+ * past the frames ordered newer than the oldest of them.
+ */
+class LRUPagePolicy implements PageReplacementPolicy {
+	private static final int ORDERED = 0;
+	private static final int PENDING = 1;
+	private final FrameLists m_lists;
+	private final int[] m_times;
+	private final long[] m_seq;
+	private long m_joins = 0;
+	// Scratch for sorting the pending frames
+	private final int[] m_batch;
+	private final int[] m_scratch;
+
+	LRUPagePolicy(int frame_count) {
+		m_lists = new FrameLists(frame_count, 2);
+		m_times = new int[frame_count];
+		m_seq = new long[frame_count];
+		m_batch = new int[frame_count];
+		m_scratch = new int[frame_count];
+	}
+
+	public void faulted(int pid, long page) {
+	}
+
+	public void allocated(int frame, int time, int pid, long page) {
+		m_seq[frame] = ++ m_joins;
+		m_times[frame] = time;
+		m_lists.addTail(PENDING, frame);
+	}
+
+	public void referenced(int frame, int time) {
+		if (m_lists.listOf(frame) >= 0 && time > m_times[frame]) {
+			m_times[frame] = time;
+			if (m_lists.listOf(frame) != PENDING) {
+				m_lists.remove(frame);
+				m_lists.addTail(PENDING, frame);
+			}
+		}
+	}
+
+	public void freed(int frame) {
+		m_lists.remove(frame);
+	}
+
+	public int victim() {
+		mergePending();
+		int frame = m_lists.head(ORDERED);
+		m_lists.remove(frame);
+		return frame;
+	}
+
+	private void mergePending() {
+		int count = 0;
+		for (int f = m_lists.head(PENDING); f >= 0; f = m_lists.next(f))
+			m_batch[count++] = f;
+		sort(0, count);
+		// Newest first, from the tail: most are newer than every frame
+		// already ordered, so the walk rarely goes past the tail
+		int before = m_lists.tail(ORDERED);
+		for (int i = count - 1; i >= 0; --i) {
+			int frame = m_batch[i];
+			while (before >= 0 && olderThan(frame, before))
+				before = m_lists.prev(before);
+			m_lists.remove(frame);
+			m_lists.insertAfter(ORDERED, before, frame);
+		}
+	}
+
+	/**
+	 * Merge sorts m_batch[lo] up to m_batch[hi-1], oldest first.
+	 */
+	private void sort(int lo, int hi) {
+		if (hi - lo < 2)
+			return;
+		int mid = (lo + hi) >>> 1;
+		sort(lo, mid);
+		sort(mid, hi);
+		int i = lo, j = mid, k = lo;
+		while (i < mid && j < hi)
+			m_scratch[k++] = olderThan(m_batch[j], m_batch[i]) ? m_batch[j++] : m_batch[i++];
+		while (i < mid)
+			m_scratch[k++] = m_batch[i++];
+		while (j < hi)
+			m_scratch[k++] = m_batch[j++];
+		System.arraycopy(m_scratch, lo, m_batch, lo, hi - lo);
+	}
+
+	private boolean olderThan(int a, int b) {
+		return m_times[a] < m_times[b] || (m_times[a] == m_times[b] && m_seq[a] < m_seq[b]);
+	}
+}
@@ -8,9 +8,15 @@ package os;
  * @version 1.0
  */
 
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import simulator.AddressLayout;
 import simulator.Debug;
 import simulator.ICPU;
+import simulator.InvertedPageTable;
+import simulator.PackedPTE;
 import simulator.IPageTableEntry;
 import simulator.IProcess;
 import simulator.IProcessState;
@@ -21,35 +27,111 @@ import simulator.CPUBase;
 
 public class OS extends simulator.OSBase {
 	final SystemInfo m_sysinfo;    
+	private final AddressLayout m_layout;
 	private final FrameInfo m_frame_info;
-	private final int m_l1entry_cnt;
-	private final int m_l2entry_cnt;
-	private final LinkedList<FrameInfo.Frame> m_free_frames = new LinkedList<FrameInfo.Frame>();
-	private final LinkedList<FrameInfo.Frame> m_referenced_frames = new LinkedList<FrameInfo.Frame>();
+	private final FreeFrames m_free_frames;
 	private final byte[] m_memory;
 	private final int m_bytes_per_page;
-	private final int m_page_count;
+	private final long m_page_count;
+	// ASIDs not held by any address space of the current generation.
+	// When they run out, the generation is bumped and the TLB flushed.
+	private final int[] m_free_asids;
+	private int m_free_asid_count = 0;
+	private int m_asid_generation = 0;
+	// Walked by the CPUs instead of the radix trees, if PageTableFormat is inverted.
+	// The radix trees still hold the OS's own per-page state.
+	private final InvertedPageTable m_ipt;
+	// Shared by every page so far only read (if ZeroPage is set), else -1.
+	// Never allocated, so never stolen or freed.
+	private final int m_zero_frame;
+	// Views of packed PTEs for faults, fault-around and exits (see PackedEntry)
+	private final PackedEntry m_fault_cursor = new PackedEntry();
+	private final PackedEntry m_around_cursor = new PackedEntry();
+	private final PackedEntry m_release_cursor = new PackedEntry();
+	// Radix tree node entries across all address spaces, now and at most
+	private long m_pt_entries = 0;
+	private long m_peak_pt_entries = 0;
 
 	private int page_number = 0;
 
+	// WSClock's working set window, in ticks per frame of memory
+	private static final int WSCLOCK_TICKS_PER_FRAME = 4;
+
 	public OS(SystemInfo si) {
 		super(si);
 		m_sysinfo = si;
 		m_frame_info = new FrameInfo(si);
-		m_l1entry_cnt = 1 << m_sysinfo.getPageTableLevel1EntryCountLog2();
-		m_l2entry_cnt = 1 << (m_sysinfo.getPageCountLog2() - m_sysinfo.getPageTableLevel1EntryCountLog2());
+		m_zero_frame = si.getZeroFrame();
+		// The zero frame is the last, so it's simply left out
+		m_free_frames = new FreeFrames(m_frame_info.m_frame_count - (m_zero_frame >= 0 ? 1 : 0));
+		m_layout = si.getAddressLayout();
 		m_bytes_per_page = 1 << si.getPageSizeBytesLog2();
 		m_memory = si.getSystemMemory();
-		m_page_count = m_l1entry_cnt * m_l2entry_cnt;
+		m_page_count = m_layout.getPageCount();
+		m_ipt = si.getInvertedPageTable();
+		m_free_asids = new int[m_sysinfo.getTLBASIDCount()];
+		refillASIDs();
+	}
+
+	/*
+	 * A valid page's entry: resident, swapped out, or neither (never
+	 * touched, or dropped while still all zeros).  Object leaf tables
+	 * hold ObjectEntrys; a PackedEntry is a view of one word of a packed
+	 * leaf table.
+	 */
+	private static abstract class PageTableEntry implements IPageTableEntry {
+		abstract void clearAccessed();
+
+		abstract boolean isValid();
+
+		abstract void setValid();
+
+		abstract long getToken();
+
+		abstract void setResident(int frame_number);
+
+		/**
+		 * Maps the (never yet written) page to the shared zero frame,
+		 * until a write gives it a frame of its own.
+		 */
+		abstract void setZeroPage(int zero_frame);
+
+		abstract boolean isZeroPage();
+
+		abstract boolean isSwapped();
+
+		abstract void setSwappedOut(long token);
+
+		/**
+		 * While resident, the swapped copy under token is still up to date
+		 * unless the page is dirty.
+		 */
+		abstract void setBackingCopy(long token);
+
+		boolean hasBackingCopy() {
+			return isResident() && getToken() >= 0;
+		}
+
+		/**
+		 * The (clean) page's frame was dropped.  It's swapped out if it had
+		 * a backing copy, else it's all zeros and will be zero filled again.
+		 */
+		abstract void setDropped();
+
+		abstract long getPageNumber();
 	}
 
-	private static class PageTableEntry implements IPageTableEntry {
-		private final int m_page_number;
+	private static class ObjectEntry extends PageTableEntry {
+		private final long m_page_number;
 		private boolean m_valid = false;
 		boolean m_swapped_out = false;
-		long m_swapped_out_token = -1L;	// if m_swapped_out
+		long m_swapped_out_token = -1L;	// if m_swapped_out, or resident with a clean backing copy
 		boolean m_in_memory = false;
 		int m_frame_number = -1;	// If m_in_memory
+		// Set by the CPU; cleared when the page is made resident
+		int m_accessed_time = 0;	// and when harvested
+		boolean m_dirty = false;
+		boolean m_zero_page = false;	// resident in the shared zero frame, copy on write
 
 		@Override
 		public boolean isResident() {
@@ -62,7 +144,31 @@ public class OS extends simulator.OSBase {
 
 		}
 
-		PageTableEntry(int i) {
+		@Override
+		public void setAccessed(int time) {
+			m_accessed_time = time;
+		}
+
+		@Override
+		public int getAccessed() {
+			return m_accessed_time;
+		}
+
+		void clearAccessed() {
+			m_accessed_time = 0;
+		}
+
+		@Override
+		public void setDirty() {
+			m_dirty = true;
+		}
+
+		@Override
+		public boolean isDirty() {
+			return m_dirty;
+		}
+
+		ObjectEntry(long i) {
 			m_page_number = i;
 		}
 
@@ -83,6 +189,18 @@ public class OS extends simulator.OSBase {
 			m_in_memory = true;
 			m_swapped_out = false;
 			m_frame_number = frame_number;
+			m_accessed_time = 0;
+			m_dirty = false;
+			m_zero_page = false;
+		}
+
+		void setZeroPage(int zero_frame) {
+			setResident(zero_frame);
+			m_zero_page = true;
+		}
+
+		boolean isZeroPage() {
+			return m_zero_page;
 		}
 
 		boolean isSwapped() {
@@ -95,139 +213,544 @@ public class OS extends simulator.OSBase {
 			m_in_memory = false;
 		}
 
-		int getPageNumber() {
+		void setBackingCopy(long token) {
+			m_swapped_out_token = token;
+		}
+
+		void setDropped() {
+			m_swapped_out = m_swapped_out_token >= 0;
+			m_in_memory = false;
+		}
+
+		long getPageNumber() {
+			return m_page_number;
+		}
+	}
+
+	/*
+	 * One word of a packed leaf table, seen as a PageTableEntry.  A view
+	 * is moved from word to word by at(), so each user (faults, the frame
+	 * table, exits) reuses one, and a view is only good until its next
+	 * at().  The frame table keeps the word's leaf and index, not a view;
+	 * the CPU decodes the words directly.  Accessed is only a bit, so
+	 * getAccessed() is 1 or 0.
+	 */
+	private static class PackedEntry extends PageTableEntry {
+		private long[] m_leaf;
+		private int m_ndx;
+		private long m_page_number;
+
+		/**
+		 * @return this, now viewing page_number's word, leaf[ndx]
+		 */
+		PackedEntry at(long[] leaf, int ndx, long page_number) {
+			m_leaf = leaf;
+			m_ndx = ndx;
+			m_page_number = page_number;
+			return this;
+		}
+
+		@Override
+		long getPageNumber() {
 			return m_page_number;
 		}
+
+		private boolean has(long bit) {
+			return (m_leaf[m_ndx] & bit) != 0;
+		}
+
+		@Override
+		public boolean isResident() {
+			return has(PackedPTE.RESIDENT);
+		}
+
+		@Override
+		public int getFrameNumber() {
+			return isResident() ? PackedPTE.getFrameNumber(m_leaf[m_ndx]) : -1;
+		}
+
+		@Override
+		public void setAccessed(int time) {
+			m_leaf[m_ndx] |= PackedPTE.ACCESSED;
+		}
+
+		@Override
+		public int getAccessed() {
+			return has(PackedPTE.ACCESSED) ? 1 : 0;
+		}
+
+		@Override
+		void clearAccessed() {
+			m_leaf[m_ndx] &= ~PackedPTE.ACCESSED;
+		}
+
+		@Override
+		public void setDirty() {
+			m_leaf[m_ndx] |= PackedPTE.DIRTY;
+		}
+
+		@Override
+		public boolean isDirty() {
+			return has(PackedPTE.DIRTY);
+		}
+
+		@Override
+		boolean isValid() {
+			return has(PackedPTE.VALID);
+		}
+
+		@Override
+		void setValid() {
+			m_leaf[m_ndx] |= PackedPTE.VALID;
+		}
+
+		@Override
+		long getToken() {
+			return PackedPTE.getToken(m_leaf[m_ndx]);
+		}
+
+		@Override
+		void setResident(int frame_number) {
+			m_leaf[m_ndx] = PackedPTE.withFrameNumber(PackedPTE.VALID | PackedPTE.RESIDENT, frame_number);
+		}
+
+		@Override
+		void setZeroPage(int zero_frame) {
+			m_leaf[m_ndx] = PackedPTE.withFrameNumber(PackedPTE.VALID | PackedPTE.RESIDENT | PackedPTE.ZERO_PAGE, zero_frame);
+		}
+
+		@Override
+		boolean isZeroPage() {
+			return has(PackedPTE.ZERO_PAGE);
+		}
+
+		@Override
+		boolean isSwapped() {
+			return has(PackedPTE.SWAPPED);
+		}
+
+		@Override
+		void setSwappedOut(long token) {
+			m_leaf[m_ndx] = PackedPTE.withToken(PackedPTE.VALID | PackedPTE.SWAPPED, token);
+		}
+
+		@Override
+		void setBackingCopy(long token) {
+			m_leaf[m_ndx] = PackedPTE.withToken(m_leaf[m_ndx], token);
+		}
+
+		@Override
+		void setDropped() {
+			long token = getToken();
+			m_leaf[m_ndx] = token >= 0
+					? PackedPTE.withToken(PackedPTE.VALID | PackedPTE.SWAPPED, token)
+					: PackedPTE.VALID;
+		}
 	}
 
 
 	private class AddressSpace {
-		PageTableEntry[][] m_page_table;
+		// Root of the radix tree; see AddressLayout.  A large page is a
+		// PageTableEntry in place of a leaf table (only if LargePages is set).
+		// With PackedPageTables, leaf tables are long[]s of PackedPTE words.
+		Object[] m_page_table;
+		// With an inverted page table there's no tree: each allocated
+		// page's entry (its valid, resident and swap state) is kept here.
+		final Map<Long, PageTableEntry> m_page_map;
 
 		private IProcess m_p;
+		int m_asid = 0;
+		int m_asid_generation = -1;
+		long m_pt_entries = 0;	// in this tree's nodes and leaf tables, or m_page_map
+		// Fault-around (see faultAround()): the last fault, the stride
+		// between faults, the window of pages mapped ahead, and where the
+		// next fault lands if the stream continues
+		long m_fault_last = -1;
+		long m_fault_stride = 0;
+		int m_fault_window = 0;
+		long m_fault_expected = -1;
 
 		AddressSpace(IProcess p) {
 			m_p = p;
-			m_page_table = new PageTableEntry[m_l1entry_cnt][];
+			if (m_ipt != null) {
+				m_page_map = new HashMap<Long, PageTableEntry>();
+				return;
+			}
+			m_page_map = null;
+			m_page_table = new Object[m_layout.getLevelEntryCount(0)];
+			countEntries(m_page_table.length);
 		}
 
-		private IPageTableEntry[][] getPTBR() {
+		private void countEntries(int entries) {
+			m_pt_entries += entries;
+			OS.this.m_pt_entries += entries;
+			m_peak_pt_entries = Math.max(m_peak_pt_entries, OS.this.m_pt_entries);
+		}
+
+		private Object[] getPTBR() {
 			return m_page_table;
 		}
 
-		boolean createMapping(int page_count, int start_page, boolean codeSpace) throws IllegalArgumentException {
+		/**
+		 * @return the last interior node on page_num's path, which holds
+		 * its leaf table (or large page).  If create, missing nodes on the
+		 * way are created; otherwise null if any is missing.
+		 */
+		private Object[] leafParent(long page_num, boolean create) {
+			Object[] node = m_page_table;
+			for (int level = 0; level < m_layout.getLevelCount() - 2; ++level) {
+				int ndx = m_layout.levelIndex(level, page_num);
+				Object[] child = (Object[]) node[ndx];
+				if (child == null) {
+					if (!create)
+						return null;
+					child = new Object[m_layout.getLevelEntryCount(level + 1)];
+					node[ndx] = child;
+					countEntries(child.length);
+				}
+				node = child;
+			}
+			return node;
+		}
+
+		/**
+		 * @return page_num's index in its leafParent()
+		 */
+		private int leafSlot(long page_num) {
+			return m_layout.levelIndex(m_layout.getLevelCount() - 2, page_num);
+		}
+
+		boolean createMapping(int page_count, long start_page, boolean codeSpace) throws IllegalArgumentException {
 			if ( (start_page + page_count) >= m_page_count) {
 				Debug.log("Memory request exceeds allocation for process " +
 						m_p.getID() + " start page " + start_page + " count " + page_count);
 				return false;
 			}
+			final int leaf_count = m_layout.getLeafEntryCount();
 			for (int p = 0; p<page_count; ++p, ++start_page) {
+				if (m_page_map != null) {
+					if (m_page_map.containsKey(start_page))
+						throw new IllegalArgumentException("Page " + start_page + " is already allocated.");
+					PageTableEntry pte = new ObjectEntry(start_page);
+					pte.setValid();
+					m_page_map.put(start_page, pte);
+					countEntries(1);
+					continue;
+				}
 
-				if (m_page_table[page_to_l1index(start_page)] == null) {
-					m_page_table[page_to_l1index(start_page)] = new PageTableEntry[m_l2entry_cnt];
+				Object[] parent = leafParent(start_page, true);
+				int slot = leafSlot(start_page);
+				if (parent[slot] instanceof PageTableEntry) {
+					throw new IllegalArgumentException("Page " + start_page + " is already allocated.");
+				}
+				// Map an untouched leaf table's range that's wholly in the request as one large page
+				if (m_sysinfo.isLargePages() && parent[slot] == null 
+						&& m_layout.leafIndex(start_page) == 0 && page_count - p >= leaf_count) {
+					PageTableEntry pte = new ObjectEntry(start_page);
+					pte.setValid();
+					parent[slot] = pte;
+					p += leaf_count - 1;
+					start_page += leaf_count - 1;
+					continue;
 				}
 
-				PageTableEntry pte = m_page_table[page_to_l1index(start_page)][page_to_l2index(start_page)];
+				if (parent[slot] == null) {
+					parent[slot] = m_sysinfo.isPackedPageTables() ? new long[leaf_count] : new PageTableEntry[leaf_count];
+					countEntries(leaf_count);
+				}
+				if (parent[slot] instanceof long[]) {
+					long[] packed = (long[]) parent[slot];
+					int ndx = m_layout.leafIndex(start_page);
+					if (packed[ndx] != 0)
+						throw new IllegalArgumentException("Page " + start_page + " is already allocated.");
+					packed[ndx] = PackedPTE.VALID;
+					continue;
+				}
+				PageTableEntry[] leaf = (PageTableEntry[]) parent[slot];
+
+				PageTableEntry pte = leaf[m_layout.leafIndex(start_page)];
 
 				if (pte == null) {
-					pte = new PageTableEntry(start_page);
+					pte = new ObjectEntry(start_page);
 					pte.setValid();
-					m_page_table[page_to_l1index(start_page)][page_to_l2index(start_page)] = pte;
+					leaf[m_layout.leafIndex(start_page)] = pte;
 				} else {
 					throw new IllegalArgumentException("Page " + pte.getPageNumber() + " is already allocated.");
 				}
 			}
 			return true;
 		}
-		PageTableEntry getPTEforPage(int page_num) {
-			if (m_page_table[page_to_l1index(page_num)] == null) {
+		/**
+		 * @param cursor  moved to the page's entry if it's packed
+		 */
+		PageTableEntry getPTEforPage(long page_num, PackedEntry cursor) {
+			if (m_page_map != null)
+				return m_page_map.get(page_num);
+			Object[] parent = leafParent(page_num, false);
+			if (parent == null)
+				return null;
+			return entryAt(parent[leafSlot(page_num)], m_layout.leafIndex(page_num), page_num, cursor);
+		}
+
+		/**
+		 * @return the large page holding page_num, or null if it isn't in one
+		 */
+		PageTableEntry getLargePage(long page_num) {
+			if (m_page_map != null)
 				return null;
+			Object[] parent = leafParent(page_num, false);
+			if (parent == null || !(parent[leafSlot(page_num)] instanceof PageTableEntry))
+				return null;
+			return (PageTableEntry) parent[leafSlot(page_num)];
+		}
+
+		/**
+		 * Replaces the large page holding page_num with a leaf table of
+		 * ordinary PTEs.  If it's resident, each PTE keeps its frame of the
+		 * run.  The frames already carry per-page mappings, and every
+		 * existing translation stays correct, so nothing needs invalidating.
+		 */
+		void splitLargePage(long page_num) {
+			Object[] parent = leafParent(page_num, false);
+			PageTableEntry large = (PageTableEntry) parent[leafSlot(page_num)];
+			final int leaf_count = m_layout.getLeafEntryCount();
+			Object leaf = m_sysinfo.isPackedPageTables() ? new long[leaf_count] : new PageTableEntry[leaf_count];
+			PackedEntry view = new PackedEntry();
+			for (int j = 0; j < leaf_count; ++j) {
+				PageTableEntry pte;
+				if (leaf instanceof long[]) {
+					pte = view.at((long[]) leaf, j, large.getPageNumber() + j);
+				} else {
+					pte = new ObjectEntry(large.getPageNumber() + j);
+					((PageTableEntry[]) leaf)[j] = pte;
+				}
+				pte.setValid();
+				if (large.isResident()) {
+					pte.setResident(large.getFrameNumber() + j);
+					if (large.getAccessed() != 0)
+						pte.setAccessed(large.getAccessed());
+					if (large.isDirty())
+						pte.setDirty();
+					m_frame_info.setPTE(large.getFrameNumber() + j, pte);
+				}
 			}
-			PageTableEntry pte = m_page_table[page_to_l1index(page_num)][page_to_l2index(page_num)];
-			return pte;
+			parent[leafSlot(page_num)] = leaf;
+			countEntries(leaf_count);
+			Debug.user("Splitting large page at page " + large.getPageNumber() + " of " + m_p);
 		}
 	}
 
 
+	/**
+	 * @param leaf  a leaf table (PageTableEntry[] or packed long[])
+	 * @param cursor  moved to the entry, and returned, if leaf is packed
+	 * @return its entry for page_num, at index ndx, or null if there's none
+	 */
+	private static PageTableEntry entryAt(Object leaf, int ndx, long page_num, PackedEntry cursor) {
+		if (leaf instanceof long[])
+			return ((long[]) leaf)[ndx] != 0 ? cursor.at((long[]) leaf, ndx, page_num) : null;
+		if (leaf instanceof PageTableEntry[])
+			return ((PageTableEntry[]) leaf)[ndx];
+		return null;
+	}
+
+	/*
+	 * The frame table, as arrays indexed by frame number.  A frame in use
+	 * records its owner, the page it holds, and the PTE mapping that page
+	 * (for part of a large page, the large page's PTE), so a steal goes
+	 * straight to the victim's PTE.  A packed PTE is recorded as its leaf
+	 * table and index, not as a view.
+	 */
 	private class FrameInfo {
-		class Frame {
-			IProcess m_owning_process = null;
-			int   m_page_num = -11;
-			final int   m_frame_number;
-			int m_reference_time = -1;
-
-			Frame(SystemInfo osi, int frame_number) {
-				m_frame_number = frame_number;
-				m_reference_time = Simulator.getTime();
-			}
-			/**
-			 * @return
-			 */
-			int getFrameNumber() {
-				return m_frame_number;
-			}
-			/**
-			 * @param p
-			 * @param page_num
-			 */
-			void setMapping(IProcess p, int page_num) {
-				m_owning_process = p;
-				m_page_num = page_num;
-			}
-			/**
-			 * @return
-			 */
-			public IProcess getProcess() {
-				return m_owning_process;
-			}
+		static final byte IN_USE = 1;
+		static final byte LARGE = 2;	// part of a large page
+		static final byte PREFETCHED = 4;	// mapped by fault-around, and not yet seen used
+		final int m_frame_count;
+		final IProcess[] m_owners;
+		final long[] m_pages;
+		final PageTableEntry[] m_ptes;		// null if packed
+		final long[][] m_leaves;			// else the packed word's leaf table
+		final int[] m_leaf_ndxs;			// and index in it
+		final byte[] m_flags;
+		final PageReplacementPolicy m_policy;
+		// Views for getPTE() of packed PTEs
+		private final PackedEntry m_cursor = new PackedEntry();
+		// Scratch for harvestAccessed()
+		final int[] m_harvest_frames;
+		final int[] m_harvest_times;
+		FrameInfo(SystemInfo osi) {
+			m_frame_count = 1<<osi.getFrameCountLog2();
+			m_owners = new IProcess[m_frame_count];
+			m_pages = new long[m_frame_count];
+			m_ptes = new PageTableEntry[m_frame_count];
+			m_leaves = new long[m_frame_count][];
+			m_leaf_ndxs = new int[m_frame_count];
+			m_flags = new byte[m_frame_count];
+			m_harvest_frames = new int[m_frame_count];
+			m_harvest_times = new int[m_frame_count];
+			m_policy = newPolicy(osi.getPageReplacementPolicy(), m_frame_count);
+		}
 
-			public int getPage() {
-				return m_page_num;
-			}
+		private PageReplacementPolicy newPolicy(String policy, int frame_count) {
+			if (policy == null || policy.equals("LRU"))
+				return new LRUPagePolicy(frame_count);
+			if (policy.equals("CLOCK"))
+				return new ClockPagePolicy(frame_count);
+			if (policy.equals("FIFO"))
+				return new FIFOPagePolicy(frame_count);
+			if (policy.equals("LFU"))
+				return new LFUPagePolicy(frame_count);
+			if (policy.equals("ARC"))
+				return new ARCPagePolicy(frame_count);
+			if (policy.equals("2Q"))
+				return new TwoQPagePolicy(frame_count);
+			// A working set window of a few ticks per frame
+			return new WSClockPagePolicy(frame_count, WSCLOCK_TICKS_PER_FRAME * frame_count);
 		}
-		Frame[] m_frames;
-		int m_free_frame_count;
-		FrameInfo(SystemInfo osi) {
-			m_free_frame_count = 1<<osi.getFrameCountLog2();
-			m_frames = new Frame[m_free_frame_count];
-			for (int f=0; f<m_free_frame_count; ++f) {
-				m_frames[f] = new Frame(osi, f);
-				m_free_frames.addLast(m_frames[f]);
+
+		/**
+		 * frame now holds p's page_num, mapped by pte
+		 * @param large  pte is a large page's
+		 */
+		void setMapping(int frame, IProcess p, long page_num, PageTableEntry pte, boolean large) {
+			m_owners[frame] = p;
+			m_pages[frame] = page_num;
+			setEntry(frame, pte);
+			m_flags[frame] = large ? (byte) (IN_USE | LARGE) : IN_USE;
+		}
+
+		/**
+		 * frame's large page was split, and pte now maps its page
+		 */
+		void setPTE(int frame, PageTableEntry pte) {
+			setEntry(frame, pte);
+			m_flags[frame] &= ~LARGE;
+		}
+
+		private void setEntry(int frame, PageTableEntry pte) {
+			if (pte instanceof PackedEntry) {
+				PackedEntry packed = (PackedEntry) pte;
+				m_ptes[frame] = null;
+				m_leaves[frame] = packed.m_leaf;
+				m_leaf_ndxs[frame] = packed.m_ndx;
+			} else {
+				m_ptes[frame] = pte;
+				m_leaves[frame] = null;
 			}
 		}
+
+		IProcess getProcess(int frame) {
+			return m_owners[frame];
+		}
+
+		long getPage(int frame) {
+			return m_pages[frame];
+		}
+
+		/**
+		 * @return frame's PTE.  If it's packed, it's a view that's only
+		 *         good until the next getPTE().
+		 */
+		PageTableEntry getPTE(int frame) {
+			if (m_leaves[frame] != null)
+				return m_cursor.at(m_leaves[frame], m_leaf_ndxs[frame], m_pages[frame]);
+			return m_ptes[frame];
+		}
+
+		boolean isInUse(int frame) {
+			return (m_flags[frame] & IN_USE) != 0;
+		}
+
+		boolean isLarge(int frame) {
+			return (m_flags[frame] & LARGE) != 0;
+		}
+
+		void setPrefetched(int frame) {
+			m_flags[frame] |= PREFETCHED;
+		}
+
+		/**
+		 * @return whether frame was PREFETCHED (and from now on, not)
+		 */
+		boolean clearPrefetched(int frame) {
+			boolean prefetched = (m_flags[frame] & PREFETCHED) != 0;
+			m_flags[frame] &= ~PREFETCHED;
+			return prefetched;
+		}
+
 		/**
-		 * @param frame
+		 * frame (if in use) was referenced at ref_time
 		 */
 		public void setReferenced(int frame, int ref_time) {
-			Frame f = getFrame(frame);
-			f.m_reference_time=ref_time;
-			if (!m_referenced_frames.contains(f)) {
-				m_referenced_frames.addFirst(f);
-			}
+			m_policy.referenced(frame, ref_time);
 		}
 
-		Frame getFrame(int ndx) {
-			return m_frames[ndx];
+		/**
+		 * frame (a free frame, or the last victim) now holds p's page_num
+		 */
+		void allocated(int frame, IProcess p, long page_num) {
+			m_flags[frame] |= IN_USE;
+			m_policy.allocated(frame, Simulator.getMonotonicInt(), p.getID(), page_num);
 		}
 
-		Frame removeLRU() {
-			int min=Integer.MAX_VALUE;
-			Frame f, lru_frame=null;
-			for(int i=0; i<m_referenced_frames.size(); i++) {
-				f=(Frame)(m_referenced_frames.get(i));
-				if(f.m_reference_time<=min) {
-					lru_frame=f;
-					min=f.m_reference_time;
-				}
-			}
-			m_referenced_frames.remove(lru_frame);
-			return lru_frame;
+		/**
+		 * frame's page was released, and frame is free
+		 */
+		void freed(int frame) {
+			m_flags[frame] = 0;
+			m_ptes[frame] = null;
+			m_leaves[frame] = null;
+			m_policy.freed(frame);
+		}
+
+		/**
+		 * Picks a frame in use to steal.  It's no longer in use, but keeps
+		 * its mapping until the new one is set.
+		 */
+		int removeVictim() {
+			int frame = m_policy.victim();
+			m_flags[frame] &= ~IN_USE;
+			return frame;
 		}
 	}
 
+	/**
+	 * Moves the accessed times the CPUs left in the page table (or the
+	 * inverted page table) to the replacement policy, then clears them.
+	 * Clearing is a separate pass since a large page's entry covers many
+	 * frames, and the policy is only told once all are collected.
+	 * Without LRU (or with packed entries, which only have an accessed
+	 * bit) the CPUs don't time accesses, so they all count as happening now.
+	 */
+	void harvestAccessed() {
+		FrameInfo fi = m_frame_info;
+		int now = m_sysinfo.isTimedAccesses() ? 0 : Simulator.getMonotonicInt();
+		int count = 0;
+		for (int n = 0; n < fi.m_frame_count; ++n) {
+			if (!fi.isInUse(n))
+				continue;
+			int time = m_ipt != null ? m_ipt.getAccessed(n) : fi.getPTE(n).getAccessed();
+			if (time != 0) {
+				if (fi.clearPrefetched(n))
+					logPrefetchUsed();
+				fi.m_harvest_frames[count] = n;
+				fi.m_harvest_times[count++] = now != 0 ? now : time;
+			}
+		}
+		for (int n = 0; n < fi.m_frame_count; ++n) {
+			if (!fi.isInUse(n))
+				continue;
+			if (m_ipt != null)
+				m_ipt.clearAccessed(n);
+			else
+				fi.getPTE(n).clearAccessed();
+		}
+		for (int i = 0; i < count; ++i)
+			fi.setReferenced(fi.m_harvest_frames[i], fi.m_harvest_times[i]);
+	}
 
 	@Override
-	public boolean syscallAlloc(IProcess p, int start_page_number, int number_of_pages) {
+	public boolean syscallAlloc(IProcess p, long start_page_number, int number_of_pages) {
 		AddressSpace as = getAddressSpace(p);
 		boolean rc = as.createMapping(number_of_pages, start_page_number, false);
 		return rc;
@@ -244,18 +767,18 @@ public class OS extends simulator.OSBase {
 	public boolean pageFaultInstruction(ICPU cpu, IProcess p, long ip_virtual) {
 		// Verify the address is a valid instruction address
 		int last_instruction_page_number =  bytes2pages(p.getTextByteCount()) - 1;
-		int page_num = vaddr2page(ip_virtual); 
+		long page_num = vaddr2page(ip_virtual); 
 		if (page_num > last_instruction_page_number) {
 			// can't execute data
 			return false;
 		}
-		boolean ok = pageFaultGeneral(cpu, p, page_num, ip_virtual);
+		boolean ok = pageFaultGeneral(cpu, p, page_num, ip_virtual, false);
 		return ok;
 	}
 
 	@Override
-	public boolean pageFaultData(ICPU cpu, IProcess p, long d_vaddr) {
-		boolean ok = pageFaultGeneral(cpu, p, vaddr2page(d_vaddr), d_vaddr);
+	public boolean pageFaultData(ICPU cpu, IProcess p, long d_vaddr, boolean write) {
+		boolean ok = pageFaultGeneral(cpu, p, vaddr2page(d_vaddr), d_vaddr, !write);
 		return ok;
 	}
 
@@ -272,6 +795,7 @@ public class OS extends simulator.OSBase {
 	public void processExiting(ICPU cpu, IProcess p) {
 		checkPageTable(p, cpu.getPTBR());  /// <<< Must remain here.
 		undispatch(p, cpu);
+		releaseASID(cpu, getAddressSpace(p));
 		killProcess(p);
 
 		super.processExiting(cpu, p);  // Leave this at the end of the method
@@ -304,8 +828,68 @@ public class OS extends simulator.OSBase {
 		cpu.setReg(1, ps.getReg(1));
 		// PTBR
 		cpu.setPTBR(getAddressSpace(p).getPTBR());
-		if (CPUBase.TLB_SUPPORTED && p != cpu.getLastDispatchedProcess())
+		if (m_ipt != null)
+			cpu.setPageTableTag(p.getID());
+		if (!CPUBase.TLB_SUPPORTED)
+			return;
+		if (usingASIDs()) {
+			// Entries stay tagged with their ASID, so the TLB only needs
+			// flushing when we run out of ASIDs (see assignASID())
+			AddressSpace as = getAddressSpace(p);
+			boolean flushed = false;
+			if (as.m_asid_generation != m_asid_generation)
+				flushed = assignASID(cpu, as);
+			cpu.setASID(as.m_asid);
+			if (!flushed && p != cpu.getLastDispatchedProcess())
+				cpu.logTLBInvalidateAvoided(as.m_asid);
+		} else if (p != cpu.getLastDispatchedProcess()) {
 			cpu.invalidateTLB();
+		}
+	}
+
+	boolean usingASIDs() {
+		return m_free_asids.length > 0;
+	}
+
+	void refillASIDs() {
+		// Pushed high to low so that ASIDs are handed out in order
+		for (m_free_asid_count = 0; m_free_asid_count < m_free_asids.length; ++m_free_asid_count)
+			m_free_asids[m_free_asid_count] = m_free_asids.length - 1 - m_free_asid_count;
+	}
+
+	/**
+	 * Gives as an ASID from the current generation.  If none are left, 
+	 * starts a new generation: every ASID goes back in the pool, and the
+	 * TLB is flushed since its entries may carry any of them.
+	 * Address spaces holding an old generation's ASID pick up a new one
+	 * on their next dispatch.
+	 * @return true iff the TLB had to be flushed.
+	 */
+	boolean assignASID(ICPU cpu, AddressSpace as) {
+		boolean flushed = false;
+		if (m_free_asid_count == 0) {
+			++ m_asid_generation;
+			refillASIDs();
+			Debug.user(cpu + " ASIDs exhausted, starting ASID generation " + m_asid_generation);
+			cpu.invalidateTLB();
+			flushed = true;
+		}
+		as.m_asid = m_free_asids[--m_free_asid_count];
+		as.m_asid_generation = m_asid_generation;
+		Debug.user(cpu + " Assigning ASID " + as.m_asid + " to " + as.m_p);
+		return flushed;
+	}
+
+	/**
+	 * Returns as's ASID to the pool.  Its TLB entries are invalidated
+	 * now, so the ASID can be reused without flushing the TLB.
+	 */
+	void releaseASID(ICPU cpu, AddressSpace as) {
+		if (!CPUBase.TLB_SUPPORTED || !usingASIDs() || as.m_asid_generation != m_asid_generation)
+			return;
+		cpu.invalidateTLBASID(as.m_asid);
+		m_free_asids[m_free_asid_count++] = as.m_asid;
+		as.m_asid_generation = -1;
 	}
 	
 	void undispatch(IProcess p, ICPU cpu) {
@@ -318,35 +902,49 @@ public class OS extends simulator.OSBase {
 		}
 	}
 
+	/**
+	 * Passes the references held by the CPU's TLB entries (which go when
+	 * the TLB is flushed or refilled) to the replacement policy.  Only
+	 * costs a walk of the TLB; the page tables' accessed bits keep until
+	 * a frame has to be stolen (see allocFrame()).
+	 */
 	void updateReferences(ICPU icpu, IProcess p) {
 		if (CPUBase.TLB_SUPPORTED) {
+			// Untimed, an entry's time only says it was referenced since
+			// it was last cleared, so it counts as now (as in harvestAccessed())
+			int now = m_sysinfo.isTimedAccesses() ? 0 : Simulator.getMonotonicInt();
 			ITLBEntry[] TLBEntries = icpu.getTLBEntries();
 			for (ITLBEntry e : TLBEntries) {
-				if (e.isValid())
-					m_frame_info.setReferenced(e.getFrame(), e.getReferencedTime());
+				if (e.isValid()) {
+					int time = e.getReferencedTime();
+					if (now != 0) {
+						if (time == 0)
+							continue;
+						time = now;
+						e.clearReferenced();
+					}
+					for (int k = 0; k < e.getFrameCount(); ++k)
+						m_frame_info.setReferenced(e.getFrame() + k, time);
+				}
 			}
 		} 
 	}
 
 
-	int page_to_l1index(int page_num) {
-		return page_num >> (m_sysinfo.getPageCountLog2() - m_sysinfo.getPageTableLevel1EntryCountLog2());
+	long page_to_vaddr(long page_num) {
+		return m_layout.page2vaddr(page_num);
 	}
 
-	int page_to_l2index(int page_num) {
-		return page_num % m_l2entry_cnt;
+	long vaddr2page(long vaddr) {
+		return m_layout.vaddr2page(vaddr);
 	}
 
-	long page_to_vaddr(int page_num) {
-		return page_num << m_sysinfo.getPageSizeBytesLog2();
-	}
 
-	int vaddr2page(long vaddr) {
-		return (int) (vaddr >> m_sysinfo.getPageSizeBytesLog2());
-	}
-
-
-	boolean pageFaultGeneral(ICPU cpu, IProcess p, int page_num, long vAddr) {
+	/**
+	 * @param read  a data load, so a page never yet written can share
+	 *              the zero frame (if ZeroPage is set)
+	 */
+	boolean pageFaultGeneral(ICPU cpu, IProcess p, long page_num, long vAddr, boolean read) {
 		if (page_num >= m_page_count) {
 			Debug.user("Segmentation fault for  " + p +
 					" on virtual address " + Simulator.hex(vAddr) +
@@ -354,7 +952,14 @@ public class OS extends simulator.OSBase {
 			return false;
 		}
 		AddressSpace as = (AddressSpace) p.getAddressSpace();
-		PageTableEntry pte = as.getPTEforPage(page_num);
+		PageTableEntry large = as.getLargePage(page_num);
+		if (large != null) {
+			if (mapLargePage(cpu, p, large))
+				return true;
+			// No aligned run of free frames, so fall back to ordinary pages
+			as.splitLargePage(page_num);
+		}
+		PageTableEntry pte = as.getPTEforPage(page_num, m_fault_cursor);
 		if (pte == null || ! pte.isValid()) {
 			// segmentation fault!
 			Debug.user("Segmentation fault for  " + p + 
@@ -362,20 +967,170 @@ public class OS extends simulator.OSBase {
 					". Page " + page_num);
 			return false;
 		}
+		final boolean copy_on_write = pte.isZeroPage();
+		if (m_zero_frame >= 0 && read && !copy_on_write && !pte.isSwapped()) {
+			// All zeros until it's written, like the zero frame
+			Debug.user(cpu + " Mapping zero frame for page " + page_num + " of " + p);
+			pte.setZeroPage(m_zero_frame);
+			logZeroPageMap();
+			return true;
+		}
+		if (copy_on_write) {
+			// Its translation (to the zero frame) is about to change
+			Debug.user(cpu + " Copy on write of zero frame for page " + page_num + " of " + p);
+			cpu.invalidateTLBPage(cpu.getASID(), page_num);
+			logCopyOnWriteFault();
+		}
+		m_frame_info.m_policy.faulted(p.getID(), page_num);
 		updateReferences(cpu, p);
-		FrameInfo.Frame frame = allocFrame(cpu, p);	// Get a frame
+		int frame = allocFrame(cpu, p, page_num, !pte.isSwapped());	// Get a frame
+		mapPage(frame, p, page_num, pte);
+		if (m_sysinfo.getFaultAroundPages() > 0)
+			faultAround(cpu, p, as, page_num, read);
+		return true;
+	}
+
+	/**
+	 * Fills frame, just allocated, with page_num's contents (swapped in,
+	 * or zeros), and maps the page to it.
+	 */
+	void mapPage(int frame, IProcess p, long page_num, PageTableEntry pte) {
 		if (pte.isSwapped()) {
+			m_free_frames.claimZeroed(frame);	// it's overwritten anyway
 			Debug.user("Frame before swap in:");
-			dumpFrame(frame.getFrameNumber(), m_memory, m_bytes_per_page);
-			swapInPage(pte.getToken(), frame.getFrameNumber(), vaddr2page(vAddr), p.getID());
+			dumpFrame(frame, m_memory, m_bytes_per_page);
+			long token = pte.getToken();
+			if (m_sysinfo.isCleanPageEviction())
+				copyInPage(token, frame, page_num, p.getID());
+			else
+				swapInPage(token, frame, page_num, p.getID());
 			Debug.user("Frame after swap in:");
-			dumpFrame(frame.getFrameNumber(), m_memory, m_bytes_per_page);
+			dumpFrame(frame, m_memory, m_bytes_per_page);
+			pte.setResident(frame);
+			if (m_sysinfo.isCleanPageEviction())
+				pte.setBackingCopy(token);
 		} else {
-			// Zero the frame
-			zeroFrame(frame.getFrameNumber());
+			zeroFrameForFault(frame);
+			pte.setResident(frame);
 		}
-		pte.setResident(frame.getFrameNumber());
-		frame.setMapping(p, page_num);
+		m_frame_info.setMapping(frame, p, page_num, pte, false);
+		if (m_ipt != null)
+			m_ipt.insert(frame, p.getID(), page_num);
+	}
+
+	/**
+	 * Fault-around: after p's fault on page_num, maps the next pages it
+	 * should fault on, at the stride between its faults.  The window of
+	 * pages mapped ahead doubles (up to FaultAroundPages) each time a
+	 * fault lands just past the last window, starts at one page when two
+	 * faults in a row have the same stride, and halves when a page it
+	 * mapped is stolen unused (see retirePrefetch()).
+	 * Free frames are used first.  Once memory is full it steals, but
+	 * only clean victims (see stealCleanFrame()), and stops at the first
+	 * victim it can't take.
+	 */
+	void faultAround(ICPU cpu, IProcess p, AddressSpace as, long page_num, boolean read) {
+		long stride = page_num - as.m_fault_last;
+		if (as.m_fault_stride != 0 && page_num == as.m_fault_expected) {
+			as.m_fault_window = Math.min(Math.max(1, 2 * as.m_fault_window), m_sysinfo.getFaultAroundPages());
+		} else if (stride != 0 && stride == as.m_fault_stride) {
+			as.m_fault_window = 1;
+		} else {
+			as.m_fault_window = 0;
+			as.m_fault_stride = stride;
+		}
+		as.m_fault_last = page_num;
+		// The stream's next fault is at the first page of the window left unmapped
+		long next = page_num + as.m_fault_stride;
+		for (int k = 0; k < as.m_fault_window; ++k, next += as.m_fault_stride) {
+			if (next < 0 || next >= m_page_count || as.getLargePage(next) != null)
+				break;
+			PageTableEntry pte = as.getPTEforPage(next, m_around_cursor);
+			if (pte == null || !pte.isValid())
+				break;		// past the allocation
+			if (pte.isResident())
+				continue;
+			// Left to fault on its own, since it would just share the zero frame
+			if (read && m_zero_frame >= 0 && !pte.isSwapped())
+				break;
+			int frame;
+			if (m_free_frames.size() > 0) {
+				frame = m_free_frames.allocate(!pte.isSwapped());
+				Debug.user("Fault-around using free frame " + frame + " for page " + next + " of " + p);
+			} else {
+				frame = stealCleanFrame(cpu, p, page_num);
+				if (frame < 0)
+					break;
+				Debug.user("Fault-around using stolen frame " + frame + " for page " + next + " of " + p);
+			}
+			m_frame_info.allocated(frame, p, next);
+			mapPage(frame, p, next, pte);
+			m_frame_info.setPrefetched(frame);
+			logPrefetch();
+		}
+		as.m_fault_expected = next;
+	}
+
+	/**
+	 * For fault-around once no frame is free: steals the policy's victim,
+	 * unless it's dirty (a prefetch isn't worth a swap-out) or one of the
+	 * pages p's faulting instruction needs (which would just fault again).
+	 * Such a victim is handed back to the policy as if just allocated.
+	 * @return the stolen frame, or -1 if the victim was handed back
+	 */
+	int stealCleanFrame(ICPU cpu, IProcess p, long page_num) {
+		harvestAccessed();
+		updateReferences(cpu, p);
+		int f = m_frame_info.removeVictim();
+		IProcess owner = m_frame_info.getProcess(f);
+		long page = m_frame_info.getPage(f);
+		boolean dirty = m_ipt != null ? m_ipt.isDirty(f) : m_frame_info.getPTE(f).isDirty();
+		if (dirty || (owner == p && (page == page_num || page == vaddr2page(cpu.getIP())))) {
+			m_frame_info.allocated(f, owner, page);
+			return -1;
+		}
+		Debug.user(cpu + " Stealing clean frame " + f + " from " + owner + ", page  " + page + " for " + p);
+		stealFrame(f, cpu, p);
+		return f;
+	}
+
+	/**
+	 * frame's page is being stolen or released: if fault-around mapped
+	 * it and it hasn't been seen used since, counts it as used or not.
+	 * One stolen unused halves its process's fault-around window.
+	 */
+	void retirePrefetch(int frame, IProcess owner, PageTableEntry pte, boolean stolen) {
+		if (!m_frame_info.clearPrefetched(frame))
+			return;
+		int time = m_ipt != null ? m_ipt.getAccessed(frame) : pte.getAccessed();
+		if (time != 0) {
+			logPrefetchUsed();
+		} else if (stolen) {
+			logPrefetchUnused();
+			getAddressSpace(owner).m_fault_window /= 2;
+		}
+	}
+
+	/**
+	 * Backs a (never yet resident) large page with an aligned run of free
+	 * frames.  Frames aren't moved to make a run, so this only succeeds
+	 * while enough of memory is free.
+	 * @return false if there's no such run
+	 */
+	boolean mapLargePage(ICPU cpu, IProcess p, PageTableEntry large) {
+		final int leaf_count = m_layout.getLeafEntryCount();
+		int base = m_free_frames.allocateRun(leaf_count);
+		if (base < 0)
+			return false;
+		updateReferences(cpu, p);
+		Debug.user(cpu + " Using free frames " + base + "-" + (base + leaf_count - 1) + 
+				" for large page at page " + large.getPageNumber() + " of " + p);
+		for (int k = 0; k < leaf_count; ++k) {
+			zeroFrameForFault(base + k);
+			m_frame_info.setMapping(base + k, p, large.getPageNumber() + k, large, true);
+			m_frame_info.allocated(base + k, p, large.getPageNumber() + k);
+		}
+		large.setResident(base);
 		return true;
 	}
 
@@ -399,6 +1154,36 @@ public class OS extends simulator.OSBase {
 		}
 	}
 
+	/**
+	 * Zeroes a frame just allocated for a fault, unless it was zeroed
+	 * while free.
+	 */
+	void zeroFrameForFault(int frameNumber) {
+		if (m_free_frames.claimZeroed(frameNumber)) {
+			Debug.user("Frame " + frameNumber + " was zeroed while free");
+			logZeroedPoolHit();
+			return;
+		}
+		zeroFrame(frameNumber);
+		logFaultZeroing();
+	}
+
+	/**
+	 * Zeroes free frames, oldest freed first, until ZeroedFramePoolSize
+	 * of them are zeroed (or none are dirty), so faults needn't.
+	 */
+	@Override
+	public void cpuIdle(ICPU cpu) {
+		final int pool_size = m_sysinfo.getZeroedFramePoolSize();
+		while (m_free_frames.zeroedSize() < pool_size && m_free_frames.dirtySize() > 0) {
+			int frame = m_free_frames.takeDirty();
+			Debug.user(cpu + " Zeroing free frame " + frame + " while idle");
+			zeroFrame(frame);
+			m_free_frames.addZeroed(frame);
+			logIdleZeroing();
+		}
+	}
+
 	void zeroFrame(int frameNumber) {
 		int byte_ndx = frameNumber2byteNdx(frameNumber);
 		Debug.user("Zero frame before:");
@@ -418,41 +1203,77 @@ public class OS extends simulator.OSBase {
 		return frameNumber * m_bytes_per_page;
 	}
 
-	FrameInfo.Frame allocFrame(ICPU cpu, IProcess p) {
-		FrameInfo.Frame f;
+	/**
+	 * @param zeroed  whether page_num will be zero filled (rather than
+	 *                swapped in), so would rather have a zeroed frame
+	 */
+	int allocFrame(ICPU cpu, IProcess p, long page_num, boolean zeroed) {
+		int f;
 		if (m_free_frames.size() > 0) {
-			f = m_free_frames.removeFirst();
-			Debug.user(cpu + " Using free frame " + f.getFrameNumber() + " for " + p);
+			f = m_free_frames.allocate(zeroed);
+			Debug.user(cpu + " Using free frame " + f + " for " + p);
 		} else {
-			f = m_frame_info.removeLRU();
-			Debug.user(cpu + " Stealing frame " + f.getFrameNumber() + 
-					" from " + f.getProcess() + ", page  " + f.getPage() + " for " + p);
+			// The policy only needs the accessed bits to pick a victim
+			harvestAccessed();
+			f = m_frame_info.removeVictim();
+			Debug.user(cpu + " Stealing frame " + f + 
+					" from " + m_frame_info.getProcess(f) + ", page  " + m_frame_info.getPage(f) + " for " + p);
 			stealFrame(f, cpu, p);
 		}
-		m_frame_info.setReferenced(f.getFrameNumber(), Simulator.getMonotonicInt());
+		m_frame_info.allocated(f, p, page_num);
 		return f;
 	}
 
-	void stealFrame(FrameInfo.Frame f, ICPU cpu, IProcess p) {
+	void stealFrame(int f, ICPU cpu, IProcess p) {
 		// Update the AddressSpace's TLBEntry
-		IProcess old_p = f.getProcess();
-		int old_page = f.getPage();
-		AddressSpace as = getAddressSpace(old_p);
-		PageTableEntry pte = as.getPTEforPage(old_page);
-		// Swap it out
-
-		Debug.user("Frame before swap out:");
-		dumpFrame(f.m_frame_number, m_memory, m_bytes_per_page);
-		long token = swapOutPage(f.m_frame_number, vaddr2page(page_to_vaddr(pte.getPageNumber())), old_p.getID());
-		pte.setSwappedOut(token);
+		IProcess old_p = m_frame_info.getProcess(f);
+		long old_page = m_frame_info.getPage(f);
+		// Only part of a large page is going, so it becomes ordinary pages
+		if (m_frame_info.isLarge(f))
+			getAddressSpace(old_p).splitLargePage(old_page);
+		PageTableEntry pte = m_frame_info.getPTE(f);
+		retirePrefetch(f, old_p, pte, true);
+		boolean dirty = m_ipt != null ? m_ipt.isDirty(f) : pte.isDirty();
+		boolean drop = m_sysinfo.isCleanPageEviction() && !dirty;
+		if (drop) {
+			// Its backing copy (or zero fill) still has its contents
+			Debug.user("Dropping clean frame " + f);
+			pte.setDropped();
+		} else {
+			if (pte.hasBackingCopy())
+				deleteSwappedPage(pte.getToken(), page_to_vaddr(pte.getPageNumber()), old_p.getID());
+			// Swap it out
+			Debug.user("Frame before swap out:");
+			dumpFrame(f, m_memory, m_bytes_per_page);
+			long token = swapOutPage(f, vaddr2page(page_to_vaddr(pte.getPageNumber())), old_p.getID());
+			pte.setSwappedOut(token);
+		}
+		logEviction(!drop);
+		old_p.incrFramesLost();
+		if (m_ipt != null)
+			m_ipt.remove(f);
 		// TODO
 		/**  
 		 * If (and only if) we're stealing a frame from ourselves,
 		 * we need to make sure any TLB mappings for the
 		 * to-be-swapped-out Page are wiped out of the TLB. 
 		 */
-		if (CPUBase.TLB_SUPPORTED && old_p == p) {
-			cpu.invalidateTLB();
+		if (old_p == p) {
+			// Without a TLB, this still clears the CPU's cached last translation
+			if (!CPUBase.TLB_SUPPORTED || m_sysinfo.isTLBPageShootdown())
+				cpu.invalidateTLBPage(cpu.getASID(), old_page);
+			else
+				cpu.invalidateTLB();
+		} else if (CPUBase.TLB_SUPPORTED && usingASIDs()) {
+			// The victim's entries survive context switches under its
+			// ASID, so they have to go now that it loses a frame.
+			AddressSpace old_as = getAddressSpace(old_p);
+			if (old_as.m_asid_generation != m_asid_generation)
+				return;
+			if (m_sysinfo.isTLBPageShootdown())
+				cpu.invalidateTLBPages(old_as.m_asid, old_page, 1);
+			else
+				cpu.invalidateTLBASID(old_as.m_asid);
 		}
 	}
 
@@ -466,26 +1287,98 @@ public class OS extends simulator.OSBase {
 	void killProcess(IProcess p) {
 		AddressSpace as = getAddressSpace(p);
 		// Release any frames, working from low to high VAs
-		PageTableEntry[][] ptes = (PageTableEntry [][]) as.getPTBR();
-		for (int i=0; i<ptes.length; ++i) {
-			if (ptes[i] != null) {
-				for (int j=0; j<ptes[i].length; ++j) {
-					PageTableEntry pte = null;
-					if (ptes[i][j] != null) {
-						pte = ptes[i][j];
-						if (pte.isSwapped()) {
-							deleteSwappedPage(pte.getToken(), page_to_vaddr(pte.getPageNumber()), p.getID());
-						} else if (pte.isResident()) {
-							int frame_num = pte.getFrameNumber();
-							FrameInfo.Frame f = m_frame_info.getFrame(frame_num);
-							Debug.user("Reclaiming free frame " + frame_num + " from process " + p.getID() +
-									" at vaddr " + page_to_vaddr(pte.getPageNumber()));
-							m_free_frames.addLast(f);
-							m_referenced_frames.remove(f);
-						}
+		if (as.m_page_map != null)
+			releaseMappedPages(p, as.m_page_map);
+		else
+			releasePages(p, as.getPTBR(), 0, 0);
+		m_pt_entries -= as.m_pt_entries;
+	}
+
+	/**
+	 * The radix trees' size is 8 bytes per entry of their nodes and leaf
+	 * tables.  An inverted page table's size is fixed.
+	 */
+	@Override
+	public long getPeakPageTableBytes() {
+		return m_ipt != null ? m_ipt.getFootprintBytes() : 8 * m_peak_pt_entries;
+	}
+
+	/**
+	 * With an inverted page table, 16 bytes per allocated page in the
+	 * AddressSpaces' page maps: its page number, and its entry as a word.
+	 */
+	@Override
+	public long getPeakPageMapBytes() {
+		return m_ipt != null ? 16 * m_peak_pt_entries : 0;
+	}
+
+	/**
+	 * Releases the frames and swapped pages in a page map (see
+	 * AddressSpace), from low to high VAs.
+	 */
+	void releaseMappedPages(IProcess p, Map<Long, PageTableEntry> map) {
+		long[] pages = new long[map.size()];
+		int n = 0;
+		for (Long page : map.keySet())
+			pages[n++] = page;
+		Arrays.sort(pages);
+		for (long page : pages)
+			releasePage(p, map.get(page));
+	}
+
+	/**
+	 * Releases the frames and swapped pages mapped under node, which is
+	 * at the given level of p's page table, from low to high VAs.
+	 * @param prefix  node's indices at the levels above, as the high bits
+	 *                of a page number (so 0 for the root)
+	 */
+	void releasePages(IProcess p, Object[] node, int level, long prefix) {
+		for (int i=0; i<node.length; ++i) {
+			if (node[i] == null)
+				continue;
+			long child_prefix = (prefix << m_layout.getLevelBits(level)) | i;
+			if (level < m_layout.getLevelCount() - 2) {
+				releasePages(p, (Object[]) node[i], level + 1, child_prefix);
+			} else if (node[i] instanceof PageTableEntry) {
+				// Never swapped: a large page is split before any of it is
+				PageTableEntry large = (PageTableEntry) node[i];
+				if (large.isResident()) {
+					for (int j=0; j<m_layout.getLeafEntryCount(); ++j) {
+						int frame_num = large.getFrameNumber() + j;
+						Debug.user("Reclaiming free frame " + frame_num + " from process " + p.getID() +
+								" at vaddr " + page_to_vaddr(large.getPageNumber() + j));
+						m_frame_info.freed(frame_num);
 					}
+					m_free_frames.free(large.getFrameNumber(), m_layout.getLeafEntryCount());
+				}
+			} else {
+				long leaf_page = child_prefix << m_layout.getLevelBits(level + 1);
+				for (int j=0; j<m_layout.getLeafEntryCount(); ++j) {
+					PageTableEntry pte = entryAt(node[i], j, leaf_page + j, m_release_cursor);
+					if (pte != null)
+						releasePage(p, pte);
 				}
 			}
 		}
 	}
+
+	/**
+	 * Releases pte's frame, or its swapped page, and any backing copy.
+	 */
+	void releasePage(IProcess p, PageTableEntry pte) {
+		if (pte.isSwapped()) {
+			deleteSwappedPage(pte.getToken(), page_to_vaddr(pte.getPageNumber()), p.getID());
+		} else if (pte.isResident() && !pte.isZeroPage()) {
+			if (pte.hasBackingCopy())
+				deleteSwappedPage(pte.getToken(), page_to_vaddr(pte.getPageNumber()), p.getID());
+			int frame_num = pte.getFrameNumber();
+			Debug.user("Reclaiming free frame " + frame_num + " from process " + p.getID() +
+					" at vaddr " + page_to_vaddr(pte.getPageNumber()));
+			retirePrefetch(frame_num, p, pte, false);
+			if (m_ipt != null)
+				m_ipt.remove(frame_num);
+			m_free_frames.free(frame_num);
+			m_frame_info.freed(frame_num);
+		}
+	}
 }
@@ -0,0 +1,35 @@
+package os;
+/**
+ * Title:
+ * Description:
+ * Copyright:    Copyright (c) 2012
+ * Company:      University of Texas at Austin
+ * @author R.L. Rockhold, Ph.D.
+ * @version 1.0
+ */
+
+/*
+ * A page that has lost its frame, remembered by ARC and 2Q.
+ */
+final class PageKey {
+	final int m_pid;
+	final long m_page;
+
+	PageKey(int pid, long page) {
+		m_pid = pid;
+		m_page = page;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof PageKey))
+			return false;
+		PageKey k = (PageKey) o;
+		return k.m_pid == m_pid && k.m_page == m_page;
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) (m_page ^ (m_page >>> 32)) * 31 + m_pid;
+	}
+}
@@ -0,0 +1,51 @@
+package os;
+/**
+ * Title:
+ * Description:
+ * Copyright:    Copyright (c) 2012
+ * Company:      University of Texas at Austin
+ * @author R.L. Rockhold, Ph.D.
+ * @version 1.0
+ */
+
+/**
+ * Decides which frame the OS steals when none is free.  A frame is in
+ * use from allocated() until it's freed() or picked by victim().
+ *
+ * References arrive lazily: from the TLBs when the OS handles a fault
+ * or a context switch, and from the page tables' accessed bits only
+ * when it needs a victim().  So a frame may be reported more than once
+ * for the same access, and not in time order.  Times are Simulator.getMonotonicInt() stamps.
+ *
+ * The faulting instruction's other page is among the frames referenced
+ * since the last fault; stealing it just faults again, so policies that
+ * might pick such a frame avoid them when there's any other choice.
+ */
+interface PageReplacementPolicy {
+	/**
+	 * pid faulted on page, which isn't in memory.  The frame it gets
+	 * will be allocated() next.
+	 */
+	void faulted(int pid, long page);
+
+	/**
+	 * frame (free, or just returned by victim()) now holds pid's page
+	 */
+	void allocated(int frame, int time, int pid, long page);
+
+	/**
+	 * frame was referenced at time.  Ignored if it's not in use.
+	 */
+	void referenced(int frame, int time);
+
+	/**
+	 * frame's page was released (its process exited)
+	 */
+	void freed(int frame);
+
+	/**
+	 * Only called when no frame is free.
+	 * @return the frame to steal, which is no longer in use
+	 */
+	int victim();
+}
@@ -0,0 +1,76 @@
+package os;
+/**
+ * Title:
+ * Description:
+ * Copyright:    Copyright (c) 2012
+ * Company:      University of Texas at Austin
+ * @author R.L. Rockhold, Ph.D.
+ * @version 1.0
+ */
+
+import java.util.LinkedHashSet;
+
+/*
+ * 2Q (Johnson and Shasha, full version).  New frames go on A1in, a
+ * FIFO of up to a quarter of memory whose references are ignored.
+ * Pages evicted from A1in are remembered on A1out (up to half as many
+ * pages as frames); a fault on one of those brings it into Am, which
+ * is LRU.  So pages touched once, as by a scan, pass through A1in
+ * without displacing Am.
+ */
+class TwoQPagePolicy implements PageReplacementPolicy {
+	private static final int A1IN = 0;
+	private static final int AM = 1;
+	private final FrameLists m_lists;
+	private final PageKey[] m_keys;
+	private final int[] m_last_time;
+	private final LinkedHashSet<PageKey> m_a1out = new LinkedHashSet<PageKey>();
+	private final int m_kin;
+	private final int m_kout;
+
+	TwoQPagePolicy(int frame_count) {
+		m_lists = new FrameLists(frame_count, 2);
+		m_keys = new PageKey[frame_count];
+		m_last_time = new int[frame_count];
+		m_kin = Math.max(1, frame_count / 4);
+		m_kout = Math.max(1, frame_count / 2);
+	}
+
+	public void faulted(int pid, long page) {
+	}
+
+	public void allocated(int frame, int time, int pid, long page) {
+		PageKey key = new PageKey(pid, page);
+		m_lists.addTail(m_a1out.remove(key) ? AM : A1IN, frame);
+		m_keys[frame] = key;
+		m_last_time[frame] = time;
+	}
+
+	public void referenced(int frame, int time) {
+		if (m_lists.listOf(frame) != AM || time <= m_last_time[frame])
+			return;
+		m_last_time[frame] = time;
+		m_lists.remove(frame);
+		m_lists.addTail(AM, frame);
+	}
+
+	public void freed(int frame) {
+		m_lists.remove(frame);
+		m_keys[frame] = null;
+	}
+
+	public int victim() {
+		int frame;
+		if (m_lists.size(A1IN) > m_kin || m_lists.size(AM) == 0) {
+			frame = m_lists.head(A1IN);
+			m_a1out.add(m_keys[frame]);
+			if (m_a1out.size() > m_kout)
+				ARCPagePolicy.removeOldest(m_a1out);
+		} else {
+			frame = m_lists.head(AM);
+		}
+		m_lists.remove(frame);
+		m_keys[frame] = null;
+		return frame;
+	}
+}
@@ -0,0 +1,97 @@
+package os;
+/**
+ * Title:
+ * Description:
+ * Copyright:    Copyright (c) 2012
+ * Company:      University of Texas at Austin
+ * @author R.L. Rockhold, Ph.D.
+ * @version 1.0
+ */
+
+import simulator.Simulator;
+
+/*
+ * WSClock.  Like CLOCK, but the hand also keeps each frame's last use
+ * (in ticks, updated when it finds the reference bit set), and only
+ * takes an unreferenced frame once it's older than the working set
+ * window.  If a whole sweep finds none, the oldest unreferenced frame
+ * goes.  Swap outs here are synchronous, so dirty frames aren't
+ * skipped for later writeback.
+ */
+class WSClockPagePolicy implements PageReplacementPolicy {
+	private final boolean[] m_in_use;
+	private final boolean[] m_referenced;
+	private final int[] m_cleared;
+	private final long[] m_last_use;
+	private final int[] m_ref_fault;	// the fault during which each was last referenced
+	private final long m_window;
+	private int m_faults = 0;
+	private int m_hand = 0;
+
+	/**
+	 * @param window  ticks since its last use after which a frame is
+	 *                outside its process's working set
+	 */
+	WSClockPagePolicy(int frame_count, long window) {
+		m_in_use = new boolean[frame_count];
+		m_referenced = new boolean[frame_count];
+		m_cleared = new int[frame_count];
+		m_last_use = new long[frame_count];
+		m_ref_fault = new int[frame_count];
+		m_window = window;
+	}
+
+	public void faulted(int pid, long page) {
+		++ m_faults;
+	}
+
+	public void allocated(int frame, int time, int pid, long page) {
+		m_in_use[frame] = true;
+		m_referenced[frame] = false;
+		m_last_use[frame] = Simulator.getTime();
+	}
+
+	public void referenced(int frame, int time) {
+		if (m_in_use[frame] && time > m_cleared[frame]) {
+			m_referenced[frame] = true;
+			m_ref_fault[frame] = m_faults;
+		}
+	}
+
+	public void freed(int frame) {
+		m_in_use[frame] = false;
+	}
+
+	public int victim() {
+		long now = Simulator.getTime();
+		int oldest = -1;
+		int recent = -1;
+		// One sweep clears every reference bit, so a second always finds a frame
+		for (int n = 0; n < 2 * m_in_use.length; ++n) {
+			int frame = m_hand;
+			m_hand = (m_hand + 1) % m_in_use.length;
+			if (!m_in_use[frame])
+				continue;
+			if (m_referenced[frame]) {
+				m_referenced[frame] = false;
+				m_cleared[frame] = Simulator.getMonotonicInt();
+				m_last_use[frame] = now;
+				continue;
+			}
+			if (m_ref_fault[frame] == m_faults) {
+				recent = frame;
+			} else if (now - m_last_use[frame] > m_window) {
+				oldest = frame;
+				break;
+			} else if (oldest < 0 || m_last_use[frame] < m_last_use[oldest]) {
+				oldest = frame;
+			}
+			if (n >= m_in_use.length - 1 && oldest >= 0)
+				break;
+		}
+		if (oldest < 0)
+			oldest = recent;
+		m_in_use[oldest] = false;
+		return oldest;
+	}
+}
@@ -0,0 +1,116 @@
+/**
+ * Title:
+ * Description:
+ * Copyright:    Copyright (c) 2012
+ * Company:      University of Texas at Austin
+ * @author R.L. Rockhold, Ph.D.
+ * @version 1.0
+ */
+
+package simulator;
+
+/**
+ * How a virtual address splits into page number and offset, and a page
+ * number into the indices of each level of the page table.  The shifts
+ * and masks are computed once from the SystemInfo, so the CPU's page
+ * walk and the OS share them rather than each recomputing them through
+ * SystemInfo getters.
+ *
+ * The page table is a radix tree of getLevelCount() levels, level 0
+ * being the root (the "L1" table).  Interior nodes are Object[]s whose
+ * entries are the next level's nodes; the last interior level's entries
+ * are leaf tables (IPageTableEntry[]) or, for a large page, a single
+ * IPageTableEntry mapping the whole range a leaf table would.  With two
+ * levels the root's entries are the leaf (L2) tables.
+ */
+public final class AddressLayout {
+    private final int m_page_shift;		// vaddr >> m_page_shift is the page number
+    private final long m_offset_mask;	// vaddr & m_offset_mask is the offset within the page
+    private final int[] m_level_bits;
+    private final int[] m_level_shift;	// (page >>> m_level_shift[l]) & m_level_mask[l] is the level l index
+    private final int[] m_level_mask;
+    private final int m_leaf_bits;
+    private final long m_page_count;
+
+    /**
+     * @param level_bits  log2 of each level's entry count, root first
+     */
+    AddressLayout(int page_shift, int[] level_bits) {
+        m_page_shift = page_shift;
+        m_offset_mask = (1L << m_page_shift) - 1;
+        m_level_bits = level_bits.clone();
+        m_level_shift = new int[level_bits.length];
+        m_level_mask = new int[level_bits.length];
+        int shift = 0;
+        for (int l = level_bits.length - 1; l >= 0; --l) {
+            m_level_shift[l] = shift;
+            m_level_mask[l] = (1 << level_bits[l]) - 1;
+            shift += level_bits[l];
+        }
+        m_leaf_bits = level_bits[level_bits.length - 1];
+        m_page_count = 1L << shift;
+    }
+
+    public long vaddr2page(long vaddr) {
+        return vaddr >> m_page_shift;
+    }
+
+    public long vaddr2pageoffset(long vaddr) {
+        return vaddr & m_offset_mask;
+    }
+
+    public long frame2paddr(int frame_num) {
+        return (long) frame_num << m_page_shift;
+    }
+
+    public long page2vaddr(long page_num) {
+        return page_num << m_page_shift;
+    }
+
+    /**
+     * Only meaningful for page numbers in [0, getPageCount()): higher
+     * bits are masked off, not range checked.
+     * @return page_num's index into its level's node
+     */
+    public int levelIndex(int level, long page_num) {
+        return (int) (page_num >>> m_level_shift[level]) & m_level_mask[level];
+    }
+
+    /**
+     * @return page_num's index into its leaf table (or large page)
+     */
+    public int leafIndex(long page_num) {
+        return (int) page_num & m_level_mask[m_level_mask.length - 1];
+    }
+
+    /**
+     * @return the same for all pages of one leaf table (or large page),
+     * and different for pages of different ones.
+     */
+    public long leafKey(long page_num) {
+        return page_num >>> m_leaf_bits;
+    }
+
+    public int getLevelCount() {
+        return m_level_bits.length;
+    }
+
+    public int getLevelBits(int level) {
+        return m_level_bits[level];
+    }
+
+    public int getLevelEntryCount(int level) {
+        return 1 << m_level_bits[level];
+    }
+
+    /**
+     * @return the pages mapped by one leaf table (or large page)
+     */
+    public int getLeafEntryCount() {
+        return 1 << m_leaf_bits;
+    }
+
+    public long getPageCount() {
+        return m_page_count;
+    }
+}
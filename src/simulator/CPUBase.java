@@ -17,14 +17,40 @@ public abstract class CPUBase implements ICPU {
     protected int m_id;
     // private boolean m_executing_instructions = false;
     protected long m_ip = -1L;
-    protected  IPageTableEntry[][] m_PTBR = null;
+    protected  Object[] m_PTBR = null;
+    protected int m_asid = 0;
+    protected int m_pt_tag = 0;
+    // The shared zero frame (see SystemInfo.getZeroFrame()), or -1.  It's
+    // mapped read-only, so a write that translates to it faults.
+    protected int m_zero_frame = -1;
+    // Set while translating a store's data address, so that finding the
+    // zero frame is logged as the write-protection fault it is, not a hit.
+    private boolean m_storing;
     private int[] m_regs = new int[2];
 
-    private static int m_xlate_hits;
-    private static int m_xlate_faults;
-    private static int m_xlate_load_steals;
-    private static int m_xlate_load_cleans;
-    private static int m_tlb_invalidates;
+    // Per CPU, and only updated on this CPU's thread, so they need no
+    // synchronization.  Hits, faults and TLB loads are also counted
+    // for the current process.
+    private long m_xlate_hits;
+    private long m_xlate_faults;
+    private long m_xlate_load_steals;
+    private long m_xlate_load_cleans;
+    private long m_tlb_invalidates;
+    private long m_tlb_invalidates_avoided;
+    private long m_tlb_page_invalidates;
+    private final long[] m_tlb_level_hits = new long[3];
+    private final long[] m_tlb_level_misses = new long[3];
+    private long m_pwc_hits;
+    private long m_pwc_misses;
+    private long m_large_page_hits;
+    private long m_pt_walks;
+    private long m_pt_probes;
+
+    // TLBs, for logTLBLevelHit() and friends.  When the TLB is split, 
+    // TLB_L1 is the data side.
+    public static final int TLB_L1 = 0;
+    public static final int TLB_L2 = 1;
+    public static final int TLB_ITLB = 2;
     protected IProcess m_last_proc;
     protected IProcess m_curr_proc = null;
     
@@ -72,14 +98,14 @@ public abstract class CPUBase implements ICPU {
 				Debug.info("Translating (instruction) virtual address " + Simulator.hex(m_ip));
 				
 				
-				int frame = xlate(m_ip);
+				int frame = xlateInstruction(m_ip);
 				if (frame==-1) {
 				    ok = Simulator.pageFaultInstruction(p, m_ip, this);
 				    if (!ok) {
 				        Simulator.processExited(this, p);
 				        break;	// Try another process
 				    }
-				    frame = xlate(m_ip);
+				    frame = xlateInstruction(m_ip);
 				    if(frame == -1)
 	 					throw new AssertionError("Recursive IP xlateTLB failure for " + p + " at " + m_ip);				    
 				    i_paddr = vaddr2paddr(m_ip, frame);	
@@ -99,16 +125,18 @@ public abstract class CPUBase implements ICPU {
 				    long d_vaddr = instr.getDataVaddr(this, p);
 					Debug.info("Translating (data) virtual address " + Simulator.hex(d_vaddr));
 					
-					frame = xlate(d_vaddr);
+					m_storing = instr.writeMemory();
+					frame = xlateData(d_vaddr);
+					m_storing = false;
 
-				    if (frame == -1) {
-				        ok = Simulator.pageFaultData(p, m_ip, i_paddr, d_vaddr, this);
+				    if (frame == -1 || (frame == m_zero_frame && instr.writeMemory())) {
+				        ok = Simulator.pageFaultData(p, m_ip, i_paddr, d_vaddr, instr.writeMemory(), this);
 					    if (!ok) {
 					        Simulator.processExited(this, p);
 					        break;	// Try another process
 					    }
 
-					    frame = xlate(d_vaddr);
+					    frame = xlateData(d_vaddr);
 					    if(frame == -1) 
 							throw new AssertionError("Recursive DP xlateTLB failure for " + p + " at " + m_ip);
 					    d_paddr = vaddr2paddr(d_vaddr, frame);
@@ -120,6 +148,8 @@ public abstract class CPUBase implements ICPU {
 				    } 
 				    d_paddr = vaddr2paddr(d_vaddr, frame);
 					Debug.info("Data physical address " + Simulator.hex(d_paddr));
+					if (instr.writeMemory())
+						setDirty(d_vaddr, frame);
 				}
 			    Simulator.executeProcess(this, p, 1);	// XXX Use ticks from instruction?
 			    ++ burst_given;	// XXX Use data from instruction?
@@ -138,14 +168,30 @@ public abstract class CPUBase implements ICPU {
     }  // end run
 
 
-    public void setPTBR(IPageTableEntry[][] ptbr) {
+    public void setPTBR(Object[] ptbr) {
         m_PTBR = ptbr;
     }
     
-    public IPageTableEntry[][] getPTBR() {
+    public Object[] getPTBR() {
         return m_PTBR;
     }
 
+    public void setASID(int asid) {
+        m_asid = asid;
+    }
+    
+    public int getASID() {
+        return m_asid;
+    }
+
+    public void setPageTableTag(int tag) {
+        m_pt_tag = tag;
+    }
+    
+    public int getPageTableTag() {
+        return m_pt_tag;
+    }
+
     public String toString() {
 	    return "CPU " + m_id;
 	}
@@ -163,8 +209,14 @@ public abstract class CPUBase implements ICPU {
      * @param page_num
      * @param fnum
      */
-    public void logXlateHit(int page_num, int fnum) {
+    public void logXlateHit(long page_num, int fnum) {
+        if (m_storing && fnum == m_zero_frame) {
+            logXlateFault(page_num);
+            return;
+        }
         ++m_xlate_hits;
+        if (m_curr_proc != null)
+            m_curr_proc.incrXlateHits();
         Debug.log(this + " Xlation Hit: page/frame " + page_num + "->" + fnum);
     }
 
@@ -172,8 +224,10 @@ public abstract class CPUBase implements ICPU {
      * @param cpu
      * @param page_num
      */
-    public void logXlateFault(int page_num) {
+    public void logXlateFault(long page_num) {
         ++ m_xlate_faults;
+        if (m_curr_proc != null)
+            m_curr_proc.incrXlateFaults();
         Debug.log(this + " Xlation Fault: page " + page_num);
     }
 
@@ -191,6 +245,25 @@ public abstract class CPUBase implements ICPU {
     public void logPTEIsNull(int ndx1, int ndx2) {
         Debug.log(this + " PTE is Null at index [" + ndx1 + "][" + ndx2 + "]");    	
     }
+
+    /**
+     * For page tables of any depth: the entry at ndx[level] of the
+     * node reached through ndx[0..level-1] is null.  With two levels,
+     * logs just what logPTEL1IndexNull() or logPTEIsNull() would.
+     * @param ndx    the walk's index at each level
+     * @param level  the level at which the walk stopped
+     * @param leaf   true if that level is the leaf (a PTE is null),
+     *               false if it's an interior node (a table is missing)
+     */
+    public void logPTENull(int[] ndx, int level, boolean leaf) {
+        StringBuilder path = new StringBuilder();
+        for (int l = 0; l <= level; ++l)
+            path.append('[').append(ndx[l]).append(']');
+        if (leaf)
+            Debug.log(this + " PTE is Null at index " + path);
+        else
+            Debug.log(this + " PTE L" + (level + 1) + " Index Null at index " + path);
+    }
     
     /**
      * @param tlb
@@ -199,18 +272,31 @@ public abstract class CPUBase implements ICPU {
      * @param page2
      * @param frame2
      */
-    public void logTLBLoadSteal(int page, int frame, int page2, int frame2) {
+    public void logTLBLoadSteal(long page, int frame, long page2, int frame2) {
         ++ m_xlate_load_steals;
+        if (m_curr_proc != null)
+            m_curr_proc.incrTLBLoads();
         Debug.log(this + " TLB Load Steal: page/frame " + page + "->" + frame + " stolen from " + page2 + "->" + frame2);
     }
 
+    /**
+     * A page table walk on a TLB miss found page in frame.  The walk
+     * logs no hit, but a store that finds the zero frame still faults.
+     */
+    protected void logTLBWalk(long page, int frame) {
+        if (m_storing && frame == m_zero_frame)
+            logXlateFault(page);
+    }
+
     /**
      * @param cpu
      * @param page
      * @param frame
      */
-    public void logTLBLoadClean(int page, int frame) {
+    public void logTLBLoadClean(long page, int frame) {
         ++ m_xlate_load_cleans;
+        if (m_curr_proc != null)
+            m_curr_proc.incrTLBLoads();
         Debug.log(this + " TLB Load Clean: page/frame " + page + "->" + frame);
     }
 
@@ -221,18 +307,74 @@ public abstract class CPUBase implements ICPU {
         ++ m_tlb_invalidates;
         Debug.log(this + " TLB Invalidate.");
     }
+
+    /**
+     * @param level  TLB_L1, TLB_L2 or TLB_ITLB
+     */
+    public void logTLBLevelHit(int level) {
+        ++ m_tlb_level_hits[level];
+    }
+
+    /**
+     * @param level  TLB_L1, TLB_L2 or TLB_ITLB
+     */
+    public void logTLBLevelMiss(int level) {
+        ++ m_tlb_level_misses[level];
+    }
+
+    public void logPageWalkCacheHit() {
+        ++ m_pwc_hits;
+    }
+
+    public void logPageWalkCacheMiss() {
+        ++ m_pwc_misses;
+    }
+
+    public void logLargePageHit() {
+        ++ m_large_page_hits;
+    }
+
+    /**
+     * @param probes  page table entries the walk read
+     */
+    public void logPageTableWalk(int probes) {
+        ++ m_pt_walks;
+        m_pt_probes += probes;
+    }
+
+    public void logTLBInvalidatePage(long page) {
+        ++ m_tlb_page_invalidates;
+        Debug.log(this + " TLB Invalidate page " + page + ".");
+    }
+
+    public void logTLBInvalidatePages(int asid, long start_page, int page_count) {
+        ++ m_tlb_page_invalidates;
+        Debug.log(this + " TLB Invalidate ASID " + asid + " pages " + start_page + " to " + (start_page + page_count - 1) + ".");
+    }
+
+    public void logTLBInvalidateASID(int asid) {
+        Debug.log(this + " TLB Invalidate ASID " + asid + ".");
+    }
+
+    /**
+     * @param asid  the ASID of the address space switched to
+     */
+    public void logTLBInvalidateAvoided(int asid) {
+        ++ m_tlb_invalidates_avoided;
+        Debug.log(this + " TLB Invalidate avoided, switching to ASID " + asid + ".");
+    }
 	
     /* (non-Javadoc)
      * @see simulator.ICPU#getTLBXlateHits()
      */
-    public int getXlateHits() {
+    public long getXlateHits() {
         return m_xlate_hits;
     }
 
     /* (non-Javadoc)
      * @see simulator.ICPU#getTLBXlateLoadSteals()
      */
-    public int getTLBXlateLoadSteals() {
+    public long getTLBXlateLoadSteals() {
         // TODO Auto-generated method stub
         return m_xlate_load_steals;
     }
@@ -240,24 +382,87 @@ public abstract class CPUBase implements ICPU {
     /* (non-Javadoc)
      * @see simulator.ICPU#getTLBXlateLoadCleans()
      */
-    public int getTLBXlateLoadCleans() {
+    public long getTLBXlateLoadCleans() {
         return m_xlate_load_cleans;
     }
 
     /* (non-Javadoc)
      * @see simulator.ICPU#getTLBXlatefaults()
      */
-    public int getXlatefaults() {
+    public long getXlatefaults() {
         return m_xlate_faults;
     }
 
     /* (non-Javadoc)
      * @see simulator.ICPU#getTLBInvalidates()
      */
-    public int getTLBInvalidates() {
+    public long getTLBInvalidates() {
         return m_tlb_invalidates;
     }
 
+    /* (non-Javadoc)
+     * @see simulator.ICPU#getTLBInvalidatesAvoided()
+     */
+    public long getTLBInvalidatesAvoided() {
+        return m_tlb_invalidates_avoided;
+    }
+
+    /* (non-Javadoc)
+     * @see simulator.ICPU#getTLBPageInvalidates()
+     */
+    public long getTLBPageInvalidates() {
+        return m_tlb_page_invalidates;
+    }
+
+    /* (non-Javadoc)
+     * @see simulator.ICPU#getTLBLevelHits(int)
+     */
+    public long getTLBLevelHits(int level) {
+        return m_tlb_level_hits[level];
+    }
+
+    /* (non-Javadoc)
+     * @see simulator.ICPU#getTLBLevelMisses(int)
+     */
+    public long getTLBLevelMisses(int level) {
+        return m_tlb_level_misses[level];
+    }
+
+    /* (non-Javadoc)
+     * @see simulator.ICPU#getPageWalkCacheHits()
+     */
+    public long getPageWalkCacheHits() {
+        return m_pwc_hits;
+    }
+
+    /* (non-Javadoc)
+     * @see simulator.ICPU#getPageWalkCacheMisses()
+     */
+    public long getPageWalkCacheMisses() {
+        return m_pwc_misses;
+    }
+
+    /* (non-Javadoc)
+     * @see simulator.ICPU#getLargePageHits()
+     */
+    public long getLargePageHits() {
+        return m_large_page_hits;
+    }
+
+    /* (non-Javadoc)
+     * @see simulator.ICPU#getPageTableWalks()
+     */
+    public long getPageTableWalks() {
+        return m_pt_walks;
+    }
+
+    /* (non-Javadoc)
+     * @see simulator.ICPU#getPageTableProbes()
+     */
+    public long getPageTableProbes() {
+        return m_pt_probes;
+    }
+
     public IProcess getLastDispatchedProcess() {
         return m_last_proc;
     }
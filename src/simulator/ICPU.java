@@ -29,6 +29,24 @@ public interface ICPU extends Runnable {
 	 *         -1 if none found
 	 */
 	public int xlateTLB(long virtual_address);
+
+	/**
+	 * Like xlate(), for an instruction fetch.
+	 * Uses the I-TLB if the TLB is split.
+	 * @param virtual_address The instruction address to translate.
+	 * @return the frame number backing the page
+	 *         -1 if none found
+	 */
+	public int xlateInstruction(long virtual_address);
+
+	/**
+	 * Like xlate(), for an instruction's data address.
+	 * Uses the D-TLB if the TLB is split.
+	 * @param virtual_address The data address to translate.
+	 * @return the frame number backing the page
+	 *         -1 if none found
+	 */
+	public int xlateData(long virtual_address);
 	
 	/**
 	 * Invalidate the TLB contents.
@@ -36,6 +54,30 @@ public interface ICPU extends Runnable {
 	 */
     public void invalidateTLB();
 
+	/**
+	 * Invalidate the TLB entry (if any) tagged with asid for a single
+	 * page, leaving the rest of the TLB intact.
+	 * @param asid
+	 * @param page
+	 */
+    public void invalidateTLBPage(int asid, long page);
+
+	/**
+	 * Invalidate the TLB entries tagged with asid for pages
+	 * start_page up to (but not including) start_page+page_count.
+	 * @param asid
+	 * @param start_page
+	 * @param page_count
+	 */
+    public void invalidateTLBPages(int asid, long start_page, int page_count);
+
+	/**
+	 * Invalidate only the TLB entries tagged with the given
+	 * address-space identifier.
+	 * @param asid
+	 */
+    public void invalidateTLBASID(int asid);
+
 	/**
 	 * Use the the PageTable to translate a virtual address
 	 * @param virtual_address The virtual address to translate.
@@ -55,6 +97,14 @@ public interface ICPU extends Runnable {
      */
     public long vaddr2paddr(long vaddr, int fnum);
     
+    /**
+     * Sets the dirty bit of the page holding vaddr, which the last
+     * data translation mapped to frame fnum.
+     * @param vaddr
+     * @param fnum
+     */
+    public void setDirty(long vaddr, int fnum);
+    
     
     
     
@@ -62,16 +112,40 @@ public interface ICPU extends Runnable {
 	int getID();
 	void setIP(long ip);
 	long getIP();
-    void setPTBR(IPageTableEntry[][] ptbr);
+    
+    /*
+     * The root of the page table, laid out as described in AddressLayout.
+     * A large page is an IPageTableEntry in place of a leaf table: it maps
+     * that whole range to a contiguous, aligned run of frames starting
+     * at its getFrameNumber().
+     * The CPU may cache references to the tree's leaf tables until the
+     * next setPTBR(), so the OS must not replace or remove a leaf table
+     * (or an interior node) of a tree in use.  Filling in a null entry,
+     * or replacing a large page with a leaf table, is fine.
+     */
+    void setPTBR(Object[] ptbr);
+    
+    /* ASID used to tag (and match) TLB entries.  0 unless the OS uses ASIDs. */
+    void setASID(int asid);
+    int getASID();
+    
+    /* 
+     * Tag of the current address space's entries in the inverted page
+     * table (see InvertedPageTable), which the CPU walks instead of the
+     * PTBR's tree when PageTableFormat is inverted.  The OS uses the
+     * process ID.
+     */
+    void setPageTableTag(int tag);
+    int getPageTableTag();
     
     /* Must be used by xlate */
-    IPageTableEntry[][] getPTBR();
+    Object[] getPTBR();
     int getReg(int regnum);
     void setReg(int regnum, int val);
     /**
      * @return
      */
-    int getXlateHits();
+    long getXlateHits();
 
      IProcess getLastDispatchedProcess();
 
@@ -79,25 +153,76 @@ public interface ICPU extends Runnable {
     /**
      * @return
      */
-    int getTLBXlateLoadSteals();
+    long getTLBXlateLoadSteals();
     
-    int getTLBXlateLoadCleans();
+    long getTLBXlateLoadCleans();
 
     /**
      * @return
      */
-    int getXlatefaults();
+    long getXlatefaults();
 
     /**
      * @return
      */
-    int getTLBInvalidates();
+    long getTLBInvalidates();
+    
+    /**
+     * @return number of dispatches that switched address spaces
+     *         without invalidating the TLB, thanks to ASIDs
+     */
+    long getTLBInvalidatesAvoided();
+    
+    /**
+     * @return number of single page or page range invalidations
+     */
+    long getTLBPageInvalidates();
+
+    /**
+     * @param level CPUBase.TLB_L1, CPUBase.TLB_L2 or CPUBase.TLB_ITLB
+     * @return lookups that hit in that TLB
+     */
+    long getTLBLevelHits(int level);
+
+    /**
+     * @param level CPUBase.TLB_L1, CPUBase.TLB_L2 or CPUBase.TLB_ITLB
+     * @return lookups that missed in that TLB
+     */
+    long getTLBLevelMisses(int level);
+    
+    /**
+     * @return page walks whose L1 entry came from the page-walk cache
+     */
+    long getPageWalkCacheHits();
+    
+    /**
+     * @return page walks that had to read the L1 entry from the page table
+     */
+    long getPageWalkCacheMisses();
+    
+    /**
+     * @return translations that hit a large page (in the TLB or page table)
+     */
+    long getLargePageHits();
+    
+    /**
+     * @return page table walks, i.e. translations that went to the page table
+     */
+    long getPageTableWalks();
+    
+    /**
+     * @return page table entries (and inverted page table anchors) read
+     *         by those walks
+     */
+    long getPageTableProbes();
     
     /**
      * 
      */
     void logTLBInvalidate();
     
+    void logTLBInvalidateAvoided(int asid);
+    
     ITLBEntry[] getTLBEntries();
 	
 }
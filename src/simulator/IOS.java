@@ -57,11 +57,14 @@ public interface IOS {
      * Otherwise, allocate a frame of memory to back the page,
      * update p's page table to reflect the new mapping, 
      * and return true.
+     * With ZeroPage, a write to a page mapped to the shared zero frame
+     * also faults, to get the page a frame of its own.
      * @param cpu
      * @param p
      * @param ip_virtual
+     * @param write  the access is a store
      */
-    boolean pageFaultData(ICPU cpu, IProcess p, long d_vaddr);
+    boolean pageFaultData(ICPU cpu, IProcess p, long d_vaddr, boolean write);
     
     /**
      * Call sequence:  CPU -> Simulator.schedule() -> OS.schedule()
@@ -72,6 +75,15 @@ public interface IOS {
      */
     IProcess schedule(ICPU cpu);
 
+    /**
+     * Called when a CPU finds no ready process, before it waits.  Work
+     * done here (e.g. zeroing free frames) takes no simulated time, and
+     * holds no Simulator lock.
+     * Call Sequence:  CPU->Simulator.schedule()->OS.cpuIdle()
+     * @param cpu
+     */
+    void cpuIdle(ICPU cpu);
+
     /**
      * Called by Simulator whenever the currently running proccess
      * is exiting.
@@ -105,7 +117,7 @@ public interface IOS {
      * @param number_of_pages
      * @return indicator of success (true), failure (false)
      */
-    boolean syscallAlloc(IProcess p, int start_page_number, int number_of_pages);
+    boolean syscallAlloc(IProcess p, long start_page_number, int number_of_pages);
     
     void setFrameReferencedTime(int frame_ndx, int time);
 }
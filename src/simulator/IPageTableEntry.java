@@ -9,7 +9,31 @@
 
 package simulator;
 
+/**
+ * The CPU sets the accessed and dirty bits as it translates through an
+ * entry; the OS harvests them when it needs them (e.g. to pick a frame
+ * to steal), rather than being called on every translation.
+ */
 public interface IPageTableEntry {
     public boolean isResident();
     public int getFrameNumber();
+
+    /**
+     * Records a translation through this entry.
+     * @param time  a Simulator.getMonotonicInt(), so never 0
+     */
+    public void setAccessed(int time);
+
+    /**
+     * @return the time of the last translation through this entry since
+     *         the OS last cleared it, or 0 if none
+     */
+    public int getAccessed();
+
+    /**
+     * Records a write to the page (or large page).
+     */
+    public void setDirty();
+
+    public boolean isDirty();
 }
@@ -66,6 +66,28 @@ public interface IProcess {
 	 */
 	void incrInstrFaults();
 	
+	/**
+	 * @return page faults (instruction or data) this process took
+	 */
+	long getPageFaults();
+
+	/*
+	 * Translation statistics, counted by the CPU running this process
+	 * (and by the OS for frames lost), for a per-process breakdown.
+	 */
+	void incrXlateHits();
+	long getXlateHits();
+	void incrXlateFaults();
+	long getXlateFaults();
+	void incrTLBLoads();
+	long getTLBLoads();
+	
+	/**
+	 * The OS took a frame from this process to give to another page.
+	 */
+	void incrFramesLost();
+	long getFramesLost();
+	
 	/**
 	 * 
 	 */
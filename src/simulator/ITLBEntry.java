@@ -11,6 +11,10 @@ package simulator;
 
 public interface ITLBEntry {
 	int getFrame();
+	/* Frames the entry maps, from getFrame() on: more than 1 for a large page */
+	int getFrameCount();
+	/* Without timed accesses, just nonzero if referenced since clearReferenced() */
 	int getReferencedTime();
+	void clearReferenced();
 	boolean isValid();
 }
@@ -92,10 +92,10 @@ abstract public class Instruction implements IInstruction {
             return new LoadRegIndirect_Instruction(instr, 1, parseIntArg(instr, 16)); 
         }
         if (instr.startsWith(loadp0)) {
-            return new LoadRegImmediate_Instruction(instr, 0, Simulator.page2vaddr(parseIntArg(instr, 16))); 
+            return new LoadRegImmediate_Instruction(instr, 0, (int) Simulator.page2vaddr(parseIntArg(instr, 16)));	// registers are 32 bits
         }
         if (instr.startsWith(loadp1)) {
-            return new LoadRegImmediate_Instruction(instr, 1, Simulator.page2vaddr(parseIntArg(instr, 16))); 
+            return new LoadRegImmediate_Instruction(instr, 1, (int) Simulator.page2vaddr(parseIntArg(instr, 16)));	// registers are 32 bits
         }
         if (syscall_alloc.compareToIgnoreCase(instr) == 0) {
             return new SyscallAlloc_Instruction(instr); 
@@ -338,7 +338,7 @@ class LoadRegPageAddr_Instruction extends DataLess_Instruction {
     LoadRegPageAddr_Instruction(String text, int regnum, int val) {
         super(text);
         m_regnum = regnum;
-        m_val = Simulator.page2vaddr(val);
+        m_val = (int) Simulator.page2vaddr(val);
     }
     public long execute(ICPU cpu, IProcess p, long ip, long d_paddr)  {
         cpu.setReg(m_regnum, m_val);
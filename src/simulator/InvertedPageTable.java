@@ -0,0 +1,135 @@
+/**
+ * Title:
+ * Description:
+ * Copyright:    Copyright (c) 2012
+ * Company:      University of Texas at Austin
+ * @author R.L. Rockhold, Ph.D.
+ * @version 1.0
+ */
+
+package simulator;
+
+import java.util.Arrays;
+
+/**
+ * A hashed, inverted page table: one entry per frame, holding the
+ * (tag, page) mapped to it, so its size depends only on physical
+ * memory.  The tag identifies the address space (the OS uses the
+ * process ID).  A hash anchor table with one bucket per frame heads
+ * chains of frames linked through m_next.
+ *
+ * Used in place of the radix tree when PageTableFormat is "inverted".
+ * The OS keeps it up to date as pages become resident or lose their
+ * frames; the CPU walks it with bucketOf(), first(), next() and
+ * matches().
+ */
+public final class InvertedPageTable {
+    private final int[] m_anchor;	// bucket -> first frame on its chain, or -1
+    private final int[] m_next;		// frame -> next frame on its chain, or -1
+    private final int[] m_tags;
+    private final long[] m_pages;
+    private final boolean[] m_used;
+    private final int[] m_accessed;	// as IPageTableEntry.getAccessed()
+    private final boolean[] m_dirty;
+    private final int m_bucket_mask;
+
+    InvertedPageTable(int frame_count) {
+        m_anchor = new int[frame_count];
+        m_next = new int[frame_count];
+        m_tags = new int[frame_count];
+        m_pages = new long[frame_count];
+        m_used = new boolean[frame_count];
+        m_accessed = new int[frame_count];
+        m_dirty = new boolean[frame_count];
+        m_bucket_mask = frame_count - 1;
+        Arrays.fill(m_anchor, -1);
+    }
+
+    public int bucketOf(int tag, long page) {
+        long h = (page ^ ((long) tag << 32)) * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & m_bucket_mask;
+    }
+
+    /**
+     * @return the first frame on bucket's chain, or -1
+     */
+    public int first(int bucket) {
+        return m_anchor[bucket];
+    }
+
+    /**
+     * @return the frame after frame on its chain, or -1
+     */
+    public int next(int frame) {
+        return m_next[frame];
+    }
+
+    public boolean matches(int frame, int tag, long page) {
+        return m_pages[frame] == page && m_tags[frame] == tag;
+    }
+
+    /**
+     * Records that frame now holds tag's page.  frame must not be in use.
+     */
+    public void insert(int frame, int tag, long page) {
+        if (m_used[frame])
+            throw new IllegalStateException("Inverted page table entry for frame " + frame + " is already in use.");
+        int bucket = bucketOf(tag, page);
+        m_tags[frame] = tag;
+        m_pages[frame] = page;
+        m_used[frame] = true;
+        m_accessed[frame] = 0;
+        m_dirty[frame] = false;
+        m_next[frame] = m_anchor[bucket];
+        m_anchor[bucket] = frame;
+    }
+
+    /**
+     * Records that frame no longer holds a page (if it did).
+     */
+    public void remove(int frame) {
+        if (!m_used[frame])
+            return;
+        int bucket = bucketOf(m_tags[frame], m_pages[frame]);
+        if (m_anchor[bucket] == frame) {
+            m_anchor[bucket] = m_next[frame];
+        } else {
+            int f = m_anchor[bucket];
+            while (m_next[f] != frame)
+                f = m_next[f];
+            m_next[f] = m_next[frame];
+        }
+        m_used[frame] = false;
+    }
+
+    /**
+     * The accessed and dirty bits of frame's entry, as in IPageTableEntry.
+     */
+    public void setAccessed(int frame, int time) {
+        m_accessed[frame] = time;
+    }
+
+    public int getAccessed(int frame) {
+        return m_accessed[frame];
+    }
+
+    public void clearAccessed(int frame) {
+        m_accessed[frame] = 0;
+    }
+
+    public void setDirty(int frame) {
+        m_dirty[frame] = true;
+    }
+
+    public boolean isDirty(int frame) {
+        return m_dirty[frame];
+    }
+
+    /**
+     * @return bytes the table would occupy: a 4 byte anchor per bucket,
+     * and per frame an 8 byte page, 4 byte tag and 4 byte link.
+     */
+    public long getFootprintBytes() {
+        return 4L * m_anchor.length + 16L * m_next.length;
+    }
+}
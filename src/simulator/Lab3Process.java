@@ -30,7 +30,11 @@ class Lab3Process implements IProcess {
 	private int m_started_time;
 	private ArrayList<String> m_trace = new ArrayList<String>();
     private Object m_object = null;
-    private int m_instr_faults;
+    private long m_instr_faults;
+    private long m_xlate_hits;
+    private long m_xlate_faults;
+    private long m_tlb_loads;
+    private long m_frames_lost;
     private IProcessState m_proc_state;
     private long m_data_vaddr = -1L;
 
@@ -188,6 +192,42 @@ class Lab3Process implements IProcess {
         ++ m_instr_faults;
     }
 
+    public long getPageFaults() {
+        return m_instr_faults;
+    }
+
+    public void incrXlateHits() {
+        ++ m_xlate_hits;
+    }
+
+    public long getXlateHits() {
+        return m_xlate_hits;
+    }
+
+    public void incrXlateFaults() {
+        ++ m_xlate_faults;
+    }
+
+    public long getXlateFaults() {
+        return m_xlate_faults;
+    }
+
+    public void incrTLBLoads() {
+        ++ m_tlb_loads;
+    }
+
+    public long getTLBLoads() {
+        return m_tlb_loads;
+    }
+
+    public void incrFramesLost() {
+        ++ m_frames_lost;
+    }
+
+    public long getFramesLost() {
+        return m_frames_lost;
+    }
+
     /* (non-Javadoc)
      * @see simulator.IProcess#getProcessState()
      */
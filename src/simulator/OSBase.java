@@ -19,6 +19,16 @@ public abstract class OSBase implements IOS {
 	}
 	Map<Long, SwappedFrameInfo> token2swapped_page = new HashMap<Long, SwappedFrameInfo>();
     long next_token = 0;
+    private long m_clean_evictions = 0;
+    private long m_dirty_evictions = 0;
+    private long m_zero_page_maps = 0;
+    private long m_cow_faults = 0;
+    private long m_zeroed_pool_hits = 0;
+    private long m_fault_zeroings = 0;
+    private long m_idle_zeroings = 0;
+    private long m_prefetches = 0;
+    private long m_prefetches_used = 0;
+    private long m_prefetches_unused = 0;
     class SwappedFrameInfo {
         private long m_paddr;
         private long m_page;
@@ -26,7 +36,7 @@ public abstract class OSBase implements IOS {
         private long m_token;
         private long m_time;
         private byte[] m_data;
-        SwappedFrameInfo(long token, long paddr, int page, int pid) {
+        SwappedFrameInfo(long token, long paddr, long page, int pid) {
             m_paddr = paddr;
             m_page = page;
             m_pid = pid;
@@ -39,7 +49,7 @@ public abstract class OSBase implements IOS {
             }
             Debug.info("Swapping out frame. " + toString());
         }
-        void copyOut(long token, long paddr, int page, int pid) {
+        void copyOut(long token, long paddr, long page, int pid) {
             if (m_page != page  ||  m_pid != pid) {
                 Debug.log("ERROR - swapIn for page with missmatch pid or vaddr. Swapped info: " + toString() + 
                          "Target info: " +
@@ -77,26 +87,143 @@ public abstract class OSBase implements IOS {
      * @param page   Info.  For validation.
      * @param pid	 For validation
      */
-    public void swapInPage(long token, int frame_num, int page, int pid) {
-    	long paddr = frame_num << m_sysinfo.getPageSizeBytesLog2();
-        Long tok = new Long(token);
-        SwappedFrameInfo fi = token2swapped_page.remove(tok);
+    public void swapInPage(long token, int frame_num, long page, int pid) {
+        copyInFrame("swapInPage", token, frame_num, page, pid, false);
+    }
+
+    /**
+     * Like swapInPage(), but the swapped copy stays, under the same token,
+     * as the page's clean backing copy.  It's still up to the caller to
+     * delete it eventually (or swap it in for good).
+     */
+    public void copyInPage(long token, int frame_num, long page, int pid) {
+        copyInFrame("copyInPage", token, frame_num, page, pid, true);
+    }
+
+    /**
+     * Copies token's swapped page into frame_num, for swapInPage() and
+     * copyInPage() (named by caller).
+     * @param keep  the swapped copy stays; otherwise it's removed
+     */
+    private void copyInFrame(String caller, long token, int frame_num, long page, int pid, boolean keep) {
+        long paddr = m_sysinfo.getAddressLayout().frame2paddr(frame_num);
+        SwappedFrameInfo fi = keep ? token2swapped_page.get(token) : token2swapped_page.remove(token);
         if (fi == null) {
-            throw new IllegalStateException("swapInPage called for token that doesn't exist.  Token: " +
+            throw new IllegalStateException(caller + " called for token that doesn't exist.  Token: " +
                     token + " target paddr: " + Long.toString(paddr, 16) + 
                     " vaddr " + Simulator.hex(page) + 
                     " pid " + pid);
-	    } else {
-	        /*
-	        info("Swapping in page for Token: " +
-	                token +  " target paddr: " + Long.toString(paddr, 16) + 
-	                " vaddr " + Long.toString(vaddr, 16) + 
-	                " pid " + pid);
-	        */
-	    }
-        
+        }
         fi.copyOut(token, paddr, page, pid);
-       
+    }
+
+    /**
+     * A page lost its frame.
+     * @param dirty  its contents had to be swapped out; otherwise they
+     *               were already swapped out (or all zeros) and the frame
+     *               was just dropped
+     */
+    public void logEviction(boolean dirty) {
+        if (dirty)
+            ++ m_dirty_evictions;
+        else
+            ++ m_clean_evictions;
+    }
+
+    public long getCleanEvictions() {
+        return m_clean_evictions;
+    }
+
+    public long getDirtyEvictions() {
+        return m_dirty_evictions;
+    }
+
+    /**
+     * A page's first touch, a read, mapped it to the zero frame.
+     */
+    public void logZeroPageMap() {
+        ++ m_zero_page_maps;
+    }
+
+    /**
+     * A write to a page mapped to the zero frame got it a frame of its own.
+     */
+    public void logCopyOnWriteFault() {
+        ++ m_cow_faults;
+    }
+
+    public long getZeroPageMaps() {
+        return m_zero_page_maps;
+    }
+
+    public long getCopyOnWriteFaults() {
+        return m_cow_faults;
+    }
+
+    /**
+     * A fault needing a zeroed frame got one already zeroed while free.
+     */
+    public void logZeroedPoolHit() {
+        ++ m_zeroed_pool_hits;
+    }
+
+    /**
+     * A fault needing a zeroed frame had to zero it.
+     */
+    public void logFaultZeroing() {
+        ++ m_fault_zeroings;
+    }
+
+    /**
+     * An idle CPU zeroed a free frame.
+     */
+    public void logIdleZeroing() {
+        ++ m_idle_zeroings;
+    }
+
+    public long getZeroedPoolHits() {
+        return m_zeroed_pool_hits;
+    }
+
+    public long getFaultZeroings() {
+        return m_fault_zeroings;
+    }
+
+    public long getIdleZeroings() {
+        return m_idle_zeroings;
+    }
+
+    /**
+     * Fault-around mapped a page before it faulted.
+     */
+    public void logPrefetch() {
+        ++ m_prefetches;
+    }
+
+    /**
+     * A page fault-around mapped was used.
+     */
+    public void logPrefetchUsed() {
+        ++ m_prefetches_used;
+    }
+
+    /**
+     * A page fault-around mapped was stolen before it was used.
+     */
+    public void logPrefetchUnused() {
+        ++ m_prefetches_unused;
+    }
+
+    public long getPrefetches() {
+        return m_prefetches;
+    }
+
+    public long getPrefetchesUsed() {
+        return m_prefetches_used;
+    }
+
+    public long getPrefetchesUnused() {
+        return m_prefetches_unused;
     }
 
     public void processExiting(ICPU cpu, IProcess p) {
@@ -120,7 +247,7 @@ public abstract class OSBase implements IOS {
      * @return  the "token" which should be stored in the page
      *          table entry for retrieval later.
      */
-    public long swapOutPage(int frame_num, int page, int pid) {
+    public long swapOutPage(int frame_num, long page, int pid) {
     	long paddr = frame_num << m_sysinfo.getPageSizeBytesLog2();
         while (token2swapped_page.containsKey(new Long(next_token))) {
             ++next_token;
@@ -167,31 +294,83 @@ public abstract class OSBase implements IOS {
 	    }
 	}
 
-    protected void checkPageTable(IProcess p, IPageTableEntry[][] pt) {
-    	for (int i=0; i<pt.length; ++i) {
-    		IPageTableEntry[] l2 = pt[i];
-    		if (l2 == null) {
-    			Debug.log("OS Process " + p.getName() + ": No 2nd Level Page Table at index [" + i + "][]");
+    protected void checkPageTable(IProcess p, Object[] pt) {
+    	// With an inverted page table there's no tree to check
+    	if (pt != null)
+    		checkPageTable(p, pt, 0, "");
+    }
+    
+    /**
+     * Reports the null entries of node, at the given level of p's page
+     * table (laid out as in AddressLayout, with leaf tables either
+     * IPageTableEntry[]s or packed long[]s).  path is node's index at each
+     * level above it, e.g. "[3]".
+     */
+    private void checkPageTable(IProcess p, Object[] node, int level, String path) {
+    	int leaf_level = m_sysinfo.getAddressLayout().getLevelCount() - 1;
+    	for (int i=0; i<node.length; ++i) {
+    		Object child = node[i];
+    		String child_path = path + "[" + i + "]";
+    		if (level == leaf_level) {
+    			// node is a leaf page table.
+    			// Report on which slots are null
+    			if (child == null) {
+    				Debug.log("OS Process " + p.getName() + ": No PTE at index " + child_path);
+    			}
     			continue;
     		}
-    		// l2 is our 2nd level page table.
-    		// Report on which slots are null
-    		for (int j=0; j<l2.length; ++j) {
-    			IPageTableEntry pte = l2[j];
-    			if (pte == null) {
-    				Debug.log("OS Process " + p.getName() + ": No PTE at index [" + i + "][" + j + "]");
-    			} 
+    		if (child == null) {
+    			Debug.log("OS Process " + p.getName() + ": No " + ordinal(level + 2) + " Level Page Table at index " + child_path + "[]");
+    		} else if (child instanceof IPageTableEntry) {
+    			Debug.log("OS Process " + p.getName() + ": Large page at index " + child_path + "[]");
+    		} else if (child instanceof long[]) {
+    			// A packed leaf table; 0 is no PTE
+    			long[] leaf = (long[]) child;
+    			for (int j=0; j<leaf.length; ++j) {
+    				if (leaf[j] == 0)
+    					Debug.log("OS Process " + p.getName() + ": No PTE at index " + child_path + "[" + j + "]");
+    			}
+    		} else {
+    			checkPageTable(p, (Object[]) child, level + 1, child_path);
     		}
     	}
     			
     }
     
+    private static String ordinal(int n) {
+    	if (n % 100 / 10 != 1) {
+    		switch (n % 10) {
+    		case 1: return n + "st";
+    		case 2: return n + "nd";
+    		case 3: return n + "rd";
+    		}
+    	}
+    	return n + "th";
+    }
+    
 
 	// Added here to allow OS to compile without it
     @Override
     public void setFrameReferencedTime(int frame_num, int time) {
 		throw new IllegalStateException("Implement OS.setFrameReferencedTime()");
     }
+
+    /**
+     * @return the most memory the page tables the CPUs walk took up at
+     * any one time, for the statistics when PageTableFormat is set
+     */
+    public long getPeakPageTableBytes() {
+    	return 0;
+    }
+
+    /**
+     * @return the most memory the OS took up at any one time for page
+     * state kept outside those page tables (with an inverted page table,
+     * each page's valid and swap state); 0 if it keeps none
+     */
+    public long getPeakPageMapBytes() {
+    	return 0;
+    }
     
 
 }
@@ -0,0 +1,69 @@
+/**
+ * Title:
+ * Description:
+ * Copyright:    Copyright (c) 2012
+ * Company:      University of Texas at Austin
+ * @author R.L. Rockhold, Ph.D.
+ * @version 1.0
+ */
+
+package simulator;
+
+/**
+ * The layout of a page table entry packed into a long, as held by the
+ * long[] leaf tables used when PackedPageTables is set.  0 is no entry.
+ *
+ *   bit 63       valid (the page is mapped)
+ *   bit 62       resident
+ *   bit 61       swapped out
+ *   bit 60       dirty
+ *   bit 59       accessed
+ *   bit 58       mapped to the shared zero frame, copy on write
+ *   bits 27-57   swap token + 1 (0 for none)
+ *   bits 0-26    frame number, if resident
+ *
+ * Unlike IPageTableEntry, accessed is a bit, not a time.
+ */
+public final class PackedPTE {
+    public static final long VALID = 1L << 63;
+    public static final long RESIDENT = 1L << 62;
+    public static final long SWAPPED = 1L << 61;
+    public static final long DIRTY = 1L << 60;
+    public static final long ACCESSED = 1L << 59;
+    public static final long ZERO_PAGE = 1L << 58;
+    public static final int MAX_FRAME_COUNT_LOG2 = 27;
+    private static final long FRAME_MASK = (1L << MAX_FRAME_COUNT_LOG2) - 1;
+    private static final int TOKEN_SHIFT = MAX_FRAME_COUNT_LOG2;
+    private static final long TOKEN_MASK = 0x7FFFFFFFL;
+
+    private PackedPTE() {
+    }
+
+    public static boolean isResident(long pte) {
+        return (pte & RESIDENT) != 0;
+    }
+
+    public static int getFrameNumber(long pte) {
+        return (int) (pte & FRAME_MASK);
+    }
+
+    public static long withFrameNumber(long pte, int frame_number) {
+        return (pte & ~FRAME_MASK) | frame_number;
+    }
+
+    /**
+     * @return the swap token, or -1 if there's none
+     */
+    public static long getToken(long pte) {
+        return ((pte >>> TOKEN_SHIFT) & TOKEN_MASK) - 1;
+    }
+
+    /**
+     * @param token  a swap token, or -1 for none
+     */
+    public static long withToken(long pte, long token) {
+        if (token + 1 > TOKEN_MASK)
+            throw new IllegalStateException("Swap token " + token + " doesn't fit in a packed page table entry.");
+        return (pte & ~(TOKEN_MASK << TOKEN_SHIFT)) | ((token + 1) << TOKEN_SHIFT);
+    }
+}
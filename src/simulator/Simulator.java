@@ -79,7 +79,10 @@ public class Simulator {
 		do {
 			IProcess p = m_os.schedule(cpu);
 			if (p == null) {
-				// No ready processes.  Call the "idle loop".
+				// No ready processes.  Let the OS use the idle time (outside
+				// the monitor: time can't advance until this CPU waits anyway),
+				// then call the "idle loop".
+				m_os.cpuIdle(cpu);
 				idleLoop(cpu);
 				continue;
 			}
@@ -199,6 +202,7 @@ public class Simulator {
 							new ArrayList<WaitingElement>());
 		
 	private static int m_total_process_count = 0;
+	private static List<IProcess> m_processes = new ArrayList<IProcess>();
 
 	private static int m_waiting_count = 0;
     private static OS m_os;
@@ -305,8 +309,8 @@ public class Simulator {
         return (bytes + (1<<m_osinfo.getPageSizeBytesLog2() -1)) >> m_osinfo.getPageSizeBytesLog2();
     }
 
-    private static long page_to_vaddr(int page_num) {
-        return page_num << m_osinfo.getPageSizeBytesLog2();
+    private static long page_to_vaddr(long page_num) {
+        return m_osinfo.getAddressLayout().page2vaddr(page_num);
     }
     
 	private static boolean startProcess(IProcess p) {
@@ -351,6 +355,7 @@ public class Simulator {
 			String s_start = props.getProperty("Process." + p_name + ".start", "0").trim();
 			Integer i_start = Integer.decode(s_start);
 			IProcess proc = new Lab3Process(m_process_count++, p_name, p_trace);
+			m_processes.add(proc);
 			/* Add it to our list of to-dos */
 			m_to_dos.add(new WaitingElement(i_start.intValue() , proc));	
 			++ m_total_process_count;									
@@ -369,16 +374,206 @@ public class Simulator {
 		Debug.log("FrameCountLog2: " + f_c_log2);
 		int p_c_log2 = Integer.parseInt(props.getProperty("PageCountLog2"));
 		Debug.log("PageCountLog2: " + p_c_log2);
-		int l1_log2 = Integer.parseInt(props.getProperty("LevelOnePTEntryCountLog2"));
-		Debug.log("LevelOnePTEntryCountLog2: " + l1_log2);
+		// PageTableLevelEntryCountLog2 (e.g. "9,9,9,9", root first) gives the page
+		// table any number of levels.  Otherwise there are two, split at LevelOnePTEntryCountLog2.
+		int[] level_bits = null;
+		int l1_log2;
+		String s_levels = props.getProperty("PageTableLevelEntryCountLog2");
+		if (s_levels != null) {
+			String[] levels = s_levels.split(",");
+			level_bits = new int[levels.length];
+			int total = 0;
+			for (int l = 0; l < levels.length; ++l) {
+				level_bits[l] = Integer.parseInt(levels[l].trim());
+				if (level_bits[l] < 1) {
+					throw new IllegalArgumentException("PageTableLevelEntryCountLog2 levels must each be at least 1: " + s_levels);
+				}
+				total += level_bits[l];
+			}
+			if (levels.length < 2 || total != p_c_log2) {
+				throw new IllegalArgumentException("PageTableLevelEntryCountLog2 must have at least two levels adding up to PageCountLog2: " + s_levels);
+			}
+			Debug.log("PageTableLevelEntryCountLog2: " + s_levels.trim());
+			l1_log2 = level_bits[0];
+		} else {
+			l1_log2 = Integer.parseInt(props.getProperty("LevelOnePTEntryCountLog2"));
+			Debug.log("LevelOnePTEntryCountLog2: " + l1_log2);
+		}
 		int tlb_entries_log2 = Integer.parseInt(props.getProperty("TLBEntryCountLog2"));
 		if (CPUBase.TLB_SUPPORTED) Debug.log("TLBEntryCountLog2: " + tlb_entries_log2);
 		m_osinfo = new SystemInfo(p_b_log2, f_c_log2, p_c_log2, l1_log2, tlb_entries_log2, m_scheduler);
+		if (level_bits != null)
+			m_osinfo.setPageTableLevelBits(level_bits);
+		m_osinfo.setTLBAssociativity(tlbWays(props, "TLBAssociativity", m_osinfo.getTLBEntryCount()));
+		m_osinfo.setTLBPolicy(tlbPolicy(props, "TLBPolicy"));
+		String s_seed = props.getProperty("TLBPolicySeed");
+		if (s_seed != null) {
+			long seed = Long.parseLong(s_seed.trim());
+			if (CPUBase.TLB_SUPPORTED) Debug.log("TLBPolicySeed: " + seed);
+			m_osinfo.setTLBPolicySeed(seed);
+		}
+		String s_l1 = props.getProperty("L1TLBEntryCountLog2");
+		if (s_l1 != null) {
+			int micro_log2 = Integer.parseInt(s_l1.trim());
+			if (CPUBase.TLB_SUPPORTED) Debug.log("L1TLBEntryCountLog2: " + micro_log2);
+			m_osinfo.setL1TLB(1 << micro_log2, 
+					tlbWays(props, "L1TLBAssociativity", 1 << micro_log2), 
+					tlbPolicy(props, "L1TLBPolicy"));
+		}
+		String s_itlb = props.getProperty("ITLBEntryCountLog2");
+		if (s_itlb != null) {
+			int itlb_log2 = Integer.parseInt(s_itlb.trim());
+			if (CPUBase.TLB_SUPPORTED) Debug.log("ITLBEntryCountLog2: " + itlb_log2);
+			m_osinfo.setITLB(1 << itlb_log2, 
+					tlbWays(props, "ITLBAssociativity", 1 << itlb_log2), 
+					tlbPolicy(props, "ITLBPolicy"));
+		}
+		String s_asids = props.getProperty("TLBASIDCountLog2");
+		if (s_asids != null) {
+			int asids_log2 = Integer.parseInt(s_asids.trim());
+			if (CPUBase.TLB_SUPPORTED) Debug.log("TLBASIDCountLog2: " + asids_log2);
+			m_osinfo.setTLBASIDCount(1 << asids_log2);
+		}
+		String s_pwc = props.getProperty("PageWalkCacheEntryCountLog2");
+		if (s_pwc != null) {
+			int pwc_log2 = Integer.parseInt(s_pwc.trim());
+			AddressLayout layout = m_osinfo.getAddressLayout();
+			if (pwc_log2 < 0 || pwc_log2 > p_c_log2 - layout.getLevelBits(layout.getLevelCount() - 1)) {
+				throw new IllegalArgumentException("PageWalkCacheEntryCountLog2 must be between 0 and the bits above the leaf page table level: " + pwc_log2);
+			}
+			Debug.log("PageWalkCacheEntryCountLog2: " + pwc_log2);
+			m_osinfo.setPageWalkCacheEntryCount(1 << pwc_log2);
+		}
+		String s_large = props.getProperty("LargePages");
+		if (s_large != null) {
+			boolean large = Boolean.parseBoolean(s_large.trim());
+			if (large && m_osinfo.getAddressLayout().getLeafEntryCount() > (1 << m_osinfo.getFrameCountLog2())) {
+				throw new IllegalArgumentException("LargePages needs at least as many frames as leaf page table entries");
+			}
+			Debug.log("LargePages: " + large);
+			m_osinfo.setLargePages(large);
+		}
+		String s_clean = props.getProperty("CleanPageEviction");
+		if (s_clean != null) {
+			boolean clean = Boolean.parseBoolean(s_clean.trim());
+			Debug.log("CleanPageEviction: " + clean);
+			m_osinfo.setCleanPageEviction(clean);
+		}
+		String s_packed = props.getProperty("PackedPageTables");
+		if (s_packed != null) {
+			boolean packed = Boolean.parseBoolean(s_packed.trim());
+			if (packed && m_osinfo.getFrameCountLog2() > PackedPTE.MAX_FRAME_COUNT_LOG2) {
+				throw new IllegalArgumentException("PackedPageTables supports at most 2^" + PackedPTE.MAX_FRAME_COUNT_LOG2 + " frames");
+			}
+			Debug.log("PackedPageTables: " + packed);
+			m_osinfo.setPackedPageTables(packed);
+		}
+		String s_zero = props.getProperty("ZeroPage");
+		if (s_zero != null) {
+			boolean zero = Boolean.parseBoolean(s_zero.trim());
+			Debug.log("ZeroPage: " + zero);
+			m_osinfo.setZeroPage(zero);
+		}
+		String s_pool = props.getProperty("ZeroedFramePoolSize");
+		if (s_pool != null) {
+			int pool = Integer.parseInt(s_pool.trim());
+			if (pool < 0) {
+				throw new IllegalArgumentException("ZeroedFramePoolSize must be >= 0: " + pool);
+			}
+			Debug.log("ZeroedFramePoolSize: " + pool);
+			m_osinfo.setZeroedFramePoolSize(pool);
+		}
+		String s_around = props.getProperty("FaultAroundPages");
+		if (s_around != null) {
+			int around = Integer.parseInt(s_around.trim());
+			if (around < 0 || around >= (1 << m_osinfo.getFrameCountLog2())) {
+				throw new IllegalArgumentException("FaultAroundPages must be >= 0 and less than the frame count: " + around);
+			}
+			Debug.log("FaultAroundPages: " + around);
+			m_osinfo.setFaultAroundPages(around);
+		}
+		String s_per_process = props.getProperty("ProcessStatistics");
+		if (s_per_process != null) {
+			boolean per_process = Boolean.parseBoolean(s_per_process.trim());
+			Debug.log("ProcessStatistics: " + per_process);
+			m_osinfo.setProcessStatistics(per_process);
+		}
+		String s_replacement = props.getProperty("PageReplacementPolicy");
+		if (s_replacement != null) {
+			s_replacement = s_replacement.trim().toUpperCase();
+			if (!s_replacement.equals("LRU") && !s_replacement.equals("CLOCK") && !s_replacement.equals("FIFO")
+					&& !s_replacement.equals("LFU") && !s_replacement.equals("ARC") && !s_replacement.equals("2Q")
+					&& !s_replacement.equals("WSCLOCK")) {
+				throw new IllegalArgumentException("PageReplacementPolicy must be LRU, CLOCK, FIFO, LFU, ARC, 2Q or WSCLOCK: " + s_replacement);
+			}
+			Debug.log("PageReplacementPolicy: " + s_replacement);
+			m_osinfo.setPageReplacementPolicy(s_replacement);
+		}
+		String s_format = props.getProperty("PageTableFormat");
+		if (s_format != null) {
+			s_format = s_format.trim().toUpperCase();
+			if (!s_format.equals("RADIX") && !s_format.equals("INVERTED")) {
+				throw new IllegalArgumentException("PageTableFormat must be 'radix' or 'inverted': " + s_format);
+			}
+			if (s_format.equals("INVERTED") && (m_osinfo.isLargePages() || m_osinfo.getPageWalkCacheEntryCount() > 0)) {
+				throw new IllegalArgumentException("An inverted page table supports neither LargePages nor a page walk cache");
+			}
+			if (s_format.equals("INVERTED") && m_osinfo.isZeroPage()) {
+				throw new IllegalArgumentException("An inverted page table can't map the zero frame for more than one page, so it doesn't support ZeroPage");
+			}
+			if (s_format.equals("INVERTED") && m_osinfo.isPackedPageTables()) {
+				throw new IllegalArgumentException("An inverted page table has no leaf tables to pack, so it doesn't support PackedPageTables");
+			}
+			Debug.log("PageTableFormat: " + s_format);
+			m_osinfo.setPageTableFormat(s_format);
+		}
+		String s_shootdown = props.getProperty("TLBShootdown");
+		if (s_shootdown != null) {
+			s_shootdown = s_shootdown.trim();
+			if (!s_shootdown.equalsIgnoreCase("page") && !s_shootdown.equalsIgnoreCase("full")) {
+				throw new IllegalArgumentException("TLBShootdown must be 'page' or 'full': " + s_shootdown);
+			}
+			if (CPUBase.TLB_SUPPORTED) Debug.log("TLBShootdown: " + s_shootdown);
+			m_osinfo.setTLBPageShootdown(s_shootdown.equalsIgnoreCase("page"));
+		}
 		OS os = new OS(m_osinfo);
 		return os;
 		
 	}
 	
+	/**
+	 * Reads a TLB's associativity. Defaults to fully associative.
+	 */
+	private static int tlbWays(Properties props, String key, int entry_count) {
+		String s_ways = props.getProperty(key);
+		if (s_ways == null) {
+			return entry_count;
+		}
+		int ways = Integer.parseInt(s_ways.trim());
+		if (ways <= 0 || Integer.bitCount(ways) != 1 || ways > entry_count) {
+			throw new IllegalArgumentException(key + " must be a power of 2 no larger than the TLB entry count: " + ways);
+		}
+		if (CPUBase.TLB_SUPPORTED) Debug.log(key + ": " + ways);
+		return ways;
+	}
+
+	/**
+	 * Reads a TLB's replacement policy. Defaults to LRU.
+	 */
+	private static String tlbPolicy(Properties props, String key) {
+		String policy = props.getProperty(key);
+		if (policy == null) {
+			return "LRU";
+		}
+		policy = policy.trim().toUpperCase();
+		if (!policy.equals("LRU") && !policy.equals("FIFO") && !policy.equals("RANDOM") 
+				&& !policy.equals("CLOCK") && !policy.equals("LFU")) {
+			throw new IllegalArgumentException(key + " must be LRU, FIFO, RANDOM, CLOCK or LFU: " + policy);
+		}
+		if (CPUBase.TLB_SUPPORTED) Debug.log(key + ": " + policy);
+		return policy;
+	}
+
 	static void finishedData(
 				IProcess p, 
 				int started_time, 
@@ -525,8 +720,81 @@ public class Simulator {
 		            ". Load Steals: " + m_cpus[c].getTLBXlateLoadSteals() + 
 		            ". Faults: " + m_cpus[c].getXlatefaults() + 
 		            ". Invalidates: " + m_cpus[c].getTLBInvalidates() + ".");
+		    if (m_osinfo.getTLBASIDCount() > 0)
+		    	Debug.log("     Invalidates avoided by ASIDs: " + m_cpus[c].getTLBInvalidatesAvoided() + ".");
+		    if (m_osinfo.getITLBEntryCount() > 0) {
+		    	Debug.log("     I-TLB Hits: " + m_cpus[c].getTLBLevelHits(CPUBase.TLB_ITLB) +
+		    			". I-TLB Misses: " + m_cpus[c].getTLBLevelMisses(CPUBase.TLB_ITLB) +
+		    			". D-TLB Hits: " + m_cpus[c].getTLBLevelHits(CPUBase.TLB_L1) +
+		    			". D-TLB Misses: " + m_cpus[c].getTLBLevelMisses(CPUBase.TLB_L1) + ".");
+		    } else if (m_osinfo.getL1TLBEntryCount() > 0) {
+		    	Debug.log("     L1 TLB Hits: " + m_cpus[c].getTLBLevelHits(CPUBase.TLB_L1) +
+		    			". L1 TLB Misses: " + m_cpus[c].getTLBLevelMisses(CPUBase.TLB_L1) + ".");
+		    }
+		    if (m_osinfo.getL1TLBEntryCount() > 0) {
+		    	Debug.log("     L2 TLB Hits: " + m_cpus[c].getTLBLevelHits(CPUBase.TLB_L2) +
+		    			". L2 TLB Misses: " + m_cpus[c].getTLBLevelMisses(CPUBase.TLB_L2) + ".");
+		    }
+		    if (m_osinfo.isTLBPageShootdown())
+		    	Debug.log("     Page Invalidates: " + m_cpus[c].getTLBPageInvalidates() + ".");
+		    }
+		    if (m_osinfo.isLargePages())
+		    	Debug.log("     Large Page Hits: " + m_cpus[c].getLargePageHits() + ".");
+		    if (m_osinfo.getPageWalkCacheEntryCount() > 0)
+		    	Debug.log("     Page Walk Cache Hits: " + m_cpus[c].getPageWalkCacheHits() +
+		    			". Page Walk Cache Misses: " + m_cpus[c].getPageWalkCacheMisses() + ".");
+		    if (m_osinfo.getPageTableFormat() != null) {
+		    	long walks = m_cpus[c].getPageTableWalks();
+		    	Debug.log("     Page Table Walks: " + walks +
+		    			". Average Probe Length: " +
+		    			String.format("%.2f", walks == 0 ? 0.0 : (double) m_cpus[c].getPageTableProbes() / walks) + ".");
 		    }
 		}
+		if (m_osinfo.isProcessStatistics()) {
+			for (IProcess p : m_processes) {
+				Debug.log("Statistics for " + p);
+				Debug.log("     Hits: " + p.getXlateHits() +
+						(CPU.TLB_SUPPORTED ? ". TLB Loads: " + p.getTLBLoads() : "") +
+						". Faults: " + p.getXlateFaults() +
+						". Page Faults: " + p.getPageFaults() +
+						". Frames Lost: " + p.getFramesLost() + ".");
+			}
+		}
+		if (m_osinfo.getPageReplacementPolicy() != null) {
+			long page_faults = 0;
+			for (IProcess p : m_processes)
+				page_faults += p.getPageFaults();
+			Debug.log("Page Replacement (" + m_osinfo.getPageReplacementPolicy() + "): Page Faults: " + page_faults +
+					". Frames Stolen: " + (m_os.getCleanEvictions() + m_os.getDirtyEvictions()) + ".");
+		}
+		if (m_osinfo.isCleanPageEviction())
+			Debug.log("Clean Evictions: " + m_os.getCleanEvictions() +
+					". Dirty Evictions: " + m_os.getDirtyEvictions() + ".");
+		if (m_osinfo.isZeroPage())
+			Debug.log("Zero Page Maps: " + m_os.getZeroPageMaps() +
+					". Copy On Write Faults: " + m_os.getCopyOnWriteFaults() + ".");
+		if (m_osinfo.getZeroedFramePoolSize() > 0)
+			Debug.log("Zeroed Pool Hits: " + m_os.getZeroedPoolHits() +
+					". Zeroed On Fault: " + m_os.getFaultZeroings() +
+					". Zeroed While Idle: " + m_os.getIdleZeroings() + ".");
+		if (m_osinfo.getFaultAroundPages() > 0) {
+			long page_faults = 0;
+			for (IProcess p : m_processes)
+				page_faults += p.getPageFaults();
+			long prefetches = m_os.getPrefetches();
+			long used = m_os.getPrefetchesUsed();
+			// Accuracy: prefetched pages used.  Coverage: would-be faults avoided.
+			Debug.log("Fault Around: Prefetched: " + prefetches +
+					". Used: " + used +
+					". Stolen Unused: " + m_os.getPrefetchesUnused() +
+					". Accuracy: " + String.format("%.2f", prefetches == 0 ? 0.0 : (double) used / prefetches) +
+					". Coverage: " + String.format("%.2f", used + page_faults == 0 ? 0.0 : (double) used / (used + page_faults)) + ".");
+		}
+		if (m_osinfo.getPageTableFormat() != null) {
+			long map = ((OSBase)m_os).getPeakPageMapBytes();
+			Debug.log("Peak Page Table Bytes (" + m_osinfo.getPageTableFormat() + "): " + ((OSBase)m_os).getPeakPageTableBytes() +
+					(map > 0 ? ". OS Page Map Bytes: " + map : "") + ".");
+		}
     }
 
     public static void processExited(ICPU cpu, IProcess p) {
@@ -558,13 +826,13 @@ public class Simulator {
         return ok;
     }
 
-    public static boolean pageFaultData(IProcess p, long ip, long i_paddr, long d_vaddr, ICPU cpu) {
+    public static boolean pageFaultData(IProcess p, long ip, long i_paddr, long d_vaddr, boolean write, ICPU cpu) {
         boolean ok = false;
         Debug.info("Data page fault at " + 
         		hex(ip) + " in process " + p.getID() + " for data address " + hex(d_vaddr) + " (page number " + (d_vaddr >> m_osinfo.getPageSizeBytesLog2()) + ")");
         
         p.incrInstrFaults();
-        ok = m_os.pageFaultData(cpu, p, d_vaddr);
+        ok = m_os.pageFaultData(cpu, p, d_vaddr, write);
         if (!ok) {
             Debug.log("Invalid Data address for process " + p.getID() + 
             	" at ip: " + hex(ip) + " for data at virtual address " + hex(d_vaddr) + " (page number " + (d_vaddr >> m_osinfo.getPageSizeBytesLog2()) + ")");
@@ -660,15 +928,15 @@ public class Simulator {
     }
 
     /**
-     * @param val
-     * @return
+     * @param page_num
+     * @return the virtual address of page_num's first byte
      */
-    static int page2vaddr(int page_num) {
-        return (int) page_num << m_osinfo.getPageSizeBytesLog2();
+    static long page2vaddr(long page_num) {
+        return m_osinfo.getAddressLayout().page2vaddr(page_num);
     }
 
-    private static int vaddr2page(long vaddr) {
-        return (int) vaddr >> m_osinfo.getPageSizeBytesLog2();
+    private static long vaddr2page(long vaddr) {
+        return m_osinfo.getAddressLayout().vaddr2page(vaddr);
     }
 
     /**
@@ -678,10 +946,10 @@ public class Simulator {
      * @param reg
      * @param reg2
      */
-    static void syscallAlloc(Instruction instr, ICPU cpu, IProcess p, long ip, int from_page, int until_page) throws InstructionException {
-        from_page += vaddr2page(p.getStartingDataVaddr());
-        until_page += vaddr2page(p.getStartingDataVaddr());
-        boolean rc = m_os.syscallAlloc(p, from_page, until_page - from_page);
+    static void syscallAlloc(Instruction instr, ICPU cpu, IProcess p, long ip, int from, int until) throws InstructionException {
+        long from_page = from + vaddr2page(p.getStartingDataVaddr());
+        long until_page = until + vaddr2page(p.getStartingDataVaddr());
+        boolean rc = m_os.syscallAlloc(p, from_page, until - from);
         if (!rc) {
             throw new InstructionException(instr, "Unable to allocate virtual for " +p + " from_page " + from_page + " until page " + until_page);
         }
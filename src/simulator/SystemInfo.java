@@ -9,14 +9,40 @@
 
 package simulator;
 
+import java.util.Arrays;
+
 public class SystemInfo {
     private final int pagesize_bytes_log2;   // bytes in a page/frame = 2**pagesize_bytes_log2
     private final int frame_count_log2;		// number of frames = 2**frame_count_log2
     private final int page_count_log2;		// number of pages in a virtual address space = 2**page_count_log2
     private final int level_1_pt_entries_log2;	// # Level1 Entries = 2 ** level_1_pt_entries_log2
+    private int[] pt_level_bits;			// log2 of each page table level's entry count, root first
     private final byte [] system_memory;
     private final IScheduler scheduler;
     private final int tlb_entry_count;
+    private AddressLayout address_layout;
+    private int tlb_associativity;			// ways per TLB set; tlb_entry_count means fully associative
+    private int tlb_asid_count = 0;			// ASIDs available to tag TLB entries; 0 means no ASIDs
+    private boolean tlb_page_shootdown = false;	// invalidate just the stolen page's TLB entry, not the whole TLB
+    private String tlb_policy = "LRU";		// TLB replacement policy: LRU, FIFO, RANDOM, CLOCK or LFU
+    private long tlb_policy_seed = 1L;		// seeds the RANDOM TLB policy
+    private int l1_tlb_entry_count = 0;		// entries in the micro-TLB in front of the TLB; 0 means none
+    private int l1_tlb_associativity = 0;
+    private String l1_tlb_policy = "LRU";
+    private int itlb_entry_count = 0;		// entries in a separate instruction TLB; 0 means a unified TLB
+    private int itlb_associativity = 0;
+    private String itlb_policy = "LRU";
+    private int pwc_entry_count = 0;		// entries in the page-walk cache of leaf table references; 0 means none
+    private boolean large_pages = false;	// map whole leaf tables' worth of an allocation as large pages
+    private boolean clean_page_eviction = false;	// keep swapped copies after swap in, so clean pages are just dropped
+    private boolean process_statistics = false;	// report translation statistics per process too
+    private String page_replacement_policy = null;	// LRU, CLOCK, FIFO, LFU, ARC, 2Q or WSCLOCK; null means LRU, without the replacement statistics
+    private String page_table_format = null;	// RADIX or INVERTED; null means RADIX, without page table statistics
+    private InvertedPageTable inverted_page_table = null;
+    private boolean packed_page_tables = false;	// leaf tables are long[]s of PackedPTE words
+    private boolean zero_page = false;	// map first-touch reads to a shared zero frame, copying on write
+    private int zeroed_frame_pool_size = 0;	// free frames idle CPUs keep zeroed; 0 means faults zero them all
+    private int fault_around_pages = 0;	// most pages a fault maps ahead of a sequential or strided stream; 0 means none
     
     public int getPageSizeBytesLog2() {
     	return pagesize_bytes_log2;
@@ -34,6 +60,19 @@ public class SystemInfo {
     	return level_1_pt_entries_log2;
     }
     
+    /**
+     * @return log2 of each page table level's entry count, root first.
+     * Two levels unless PageTableLevelEntryCountLog2 is set.
+     */
+    public int[] getPageTableLevelBits() {
+    	return pt_level_bits.clone();
+    }
+    
+    void setPageTableLevelBits(int[] level_bits) {
+    	pt_level_bits = level_bits.clone();
+    	address_layout = new AddressLayout(pagesize_bytes_log2, pt_level_bits);
+    }
+    
     public byte[] getSystemMemory() {
     	return system_memory;
     }
@@ -46,13 +85,230 @@ public class SystemInfo {
     	return tlb_entry_count;
     }
     
+    public AddressLayout getAddressLayout() {
+    	return address_layout;
+    }
+    
+    public int getTLBAssociativity() {
+    	return tlb_associativity;
+    }
+    
+    void setTLBAssociativity(int ways) {
+    	tlb_associativity = ways;
+    }
+    
+    public int getTLBASIDCount() {
+    	return tlb_asid_count;
+    }
+    
+    void setTLBASIDCount(int asids) {
+    	tlb_asid_count = asids;
+    }
+    
+    public boolean isTLBPageShootdown() {
+    	return tlb_page_shootdown;
+    }
+    
+    void setTLBPageShootdown(boolean by_page) {
+    	tlb_page_shootdown = by_page;
+    }
+    
+    public String getTLBPolicy() {
+    	return tlb_policy;
+    }
+    
+    void setTLBPolicy(String policy) {
+    	tlb_policy = policy;
+    }
+    
+    public long getTLBPolicySeed() {
+    	return tlb_policy_seed;
+    }
+    
+    void setTLBPolicySeed(long seed) {
+    	tlb_policy_seed = seed;
+    }
+    
+    public int getL1TLBEntryCount() {
+    	return l1_tlb_entry_count;
+    }
+    
+    public int getL1TLBAssociativity() {
+    	return l1_tlb_associativity;
+    }
+    
+    public String getL1TLBPolicy() {
+    	return l1_tlb_policy;
+    }
+    
+    void setL1TLB(int entry_count, int ways, String policy) {
+    	l1_tlb_entry_count = entry_count;
+    	l1_tlb_associativity = ways;
+    	l1_tlb_policy = policy;
+    }
+    
+    public int getITLBEntryCount() {
+    	return itlb_entry_count;
+    }
+    
+    public int getITLBAssociativity() {
+    	return itlb_associativity;
+    }
+    
+    public String getITLBPolicy() {
+    	return itlb_policy;
+    }
+    
+    void setITLB(int entry_count, int ways, String policy) {
+    	itlb_entry_count = entry_count;
+    	itlb_associativity = ways;
+    	itlb_policy = policy;
+    }
+    
+    public int getPageWalkCacheEntryCount() {
+    	return pwc_entry_count;
+    }
+    
+    void setPageWalkCacheEntryCount(int entry_count) {
+    	pwc_entry_count = entry_count;
+    }
+    
+    public boolean isLargePages() {
+    	return large_pages;
+    }
+    
+    void setLargePages(boolean large) {
+    	large_pages = large;
+    }
+    
+    public boolean isCleanPageEviction() {
+    	return clean_page_eviction;
+    }
+    
+    void setCleanPageEviction(boolean clean) {
+    	clean_page_eviction = clean;
+    }
+    
+    public boolean isPackedPageTables() {
+    	return packed_page_tables;
+    }
+    
+    void setPackedPageTables(boolean packed) {
+    	packed_page_tables = packed;
+    }
+    
+    public boolean isZeroPage() {
+    	return zero_page;
+    }
+
+    void setZeroPage(boolean zero) {
+    	zero_page = zero;
+    }
+
+    /**
+     * @return the frame, always all zeros, that pages only read so far
+     *         share if ZeroPage is set (the last frame); otherwise -1
+     */
+    public int getZeroFrame() {
+    	return zero_page ? (1 << frame_count_log2) - 1 : -1;
+    }
+
+    public int getZeroedFramePoolSize() {
+    	return zeroed_frame_pool_size;
+    }
+
+    void setZeroedFramePoolSize(int size) {
+    	zeroed_frame_pool_size = size;
+    }
+
+    public int getFaultAroundPages() {
+    	return fault_around_pages;
+    }
+
+    void setFaultAroundPages(int pages) {
+    	fault_around_pages = pages;
+    }
+
+    public boolean isProcessStatistics() {
+    	return process_statistics;
+    }
+    
+    void setProcessStatistics(boolean per_process) {
+    	process_statistics = per_process;
+    }
+    
+    public String getPageReplacementPolicy() {
+    	return page_replacement_policy;
+    }
+    
+    void setPageReplacementPolicy(String policy) {
+    	page_replacement_policy = policy;
+    }
+    
+    /**
+     * @return true if frames are stolen in exact LRU order, so every
+     *         access needs a time (not just an accessed bit)
+     */
+    public boolean isLRUReplacement() {
+    	return page_replacement_policy == null || page_replacement_policy.equals("LRU");
+    }
+    
+    /**
+     * @return true if the CPUs record the time of each access (in PTEs
+     *         and TLB entries); otherwise they only mark entries accessed.
+     *         Packed PTEs have no room for a time, so LRU goes by when
+     *         the OS finds them accessed.
+     */
+    public boolean isTimedAccesses() {
+    	return isLRUReplacement() && !isPackedPageTables();
+    }
+    
+    public String getPageTableFormat() {
+    	return page_table_format;
+    }
+    
+    void setPageTableFormat(String format) {
+    	page_table_format = format;
+    	inverted_page_table = format.equals("INVERTED") ? new InvertedPageTable(1 << frame_count_log2) : null;
+    }
+    
+    /**
+     * @return the inverted page table the CPUs walk, or null if they walk
+     * each process's radix tree.
+     */
+    public InvertedPageTable getInvertedPageTable() {
+    	return inverted_page_table;
+    }
+    
     public String toString() {
         return "SystemInfo:"
           + " pagesize_bytes_log2: " + pagesize_bytes_log2 
           + ". frame_count_log2: " + frame_count_log2 
           + ". page_count_log2: " + page_count_log2
           + ". level_1_pt_entries_log2: " + level_1_pt_entries_log2
+          + ". pt_level_bits: " + Arrays.toString(pt_level_bits)
           + ". tlb_entry_count: " + tlb_entry_count 
+          + ". tlb_associativity: " + tlb_associativity 
+          + ". tlb_asid_count: " + tlb_asid_count 
+          + ". tlb_page_shootdown: " + tlb_page_shootdown 
+          + ". tlb_policy: " + tlb_policy 
+          + ". tlb_policy_seed: " + tlb_policy_seed 
+          + ". l1_tlb_entry_count: " + l1_tlb_entry_count 
+          + ". l1_tlb_associativity: " + l1_tlb_associativity 
+          + ". l1_tlb_policy: " + l1_tlb_policy 
+          + ". itlb_entry_count: " + itlb_entry_count 
+          + ". itlb_associativity: " + itlb_associativity 
+          + ". itlb_policy: " + itlb_policy 
+          + ". pwc_entry_count: " + pwc_entry_count 
+          + ". large_pages: " + large_pages 
+          + ". clean_page_eviction: " + clean_page_eviction 
+          + ". process_statistics: " + process_statistics 
+          + ". page_replacement_policy: " + page_replacement_policy 
+          + ". page_table_format: " + page_table_format 
+          + ". packed_page_tables: " + packed_page_tables 
+          + ". zero_page: " + zero_page 
+          + ". zeroed_frame_pool_size: " + zeroed_frame_pool_size 
+          + ". fault_around_pages: " + fault_around_pages 
           + ".";
           
     }
@@ -69,6 +325,8 @@ public class SystemInfo {
         level_1_pt_entries_log2 = lev1_entry_count_log2;
         system_memory = new byte[(1<<frame_count_log2) * (1<<pagesize_bytes_log2)];
         tlb_entry_count = 1<<tlb_count_log2;
+        tlb_associativity = tlb_entry_count;
         scheduler = s;
+        setPageTableLevelBits(new int[] { level_1_pt_entries_log2, page_count_log2 - level_1_pt_entries_log2 });
     }
 }